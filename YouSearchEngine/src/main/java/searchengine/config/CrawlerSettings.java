@@ -0,0 +1,18 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawler")
+public class CrawlerSettings {
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int frontierCapacity = 10_000;
+    private int maxConnections = 8;
+    private int maxInFlight = 32;
+    private VisitedSetMode visitedSet = VisitedSetMode.EXACT;
+}
@@ -4,15 +4,24 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Positive;
 
 @Getter
 @Setter
 @Component
+@Validated
 @ConfigurationProperties(prefix = "jsoup-connections")
 public class JsoupConnection {
 
     private String userAgent;
     private String referrer;
-    private int timeoutMin;
-    private int timeoutMax;
+    @Positive
+    private double requestsPerSecond = 5;
+    @Positive
+    private int burst = 2;
+    private boolean respectCrawlDelay = true;
+    private FetchMode fetchMode = FetchMode.POOL;
+    private int fetchThreads = 64;
 }
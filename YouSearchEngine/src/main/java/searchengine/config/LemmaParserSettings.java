@@ -0,0 +1,30 @@
+package searchengine.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "lemma-parser")
+public class LemmaParserSettings {
+    private int cacheSize = 100_000;
+    private Language russian = new Language(true, Set.of("МЕЖД", "ПРЕДЛ", "СОЮЗ", "МС"), Set.of());
+    private Language english = new Language(true, Set.of("ARTICLE", "CONJ", "PREP", "INT", "PART"), Set.of());
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Language {
+        private boolean enabled = true;
+        private Set<String> stopPartsOfSpeech = Set.of();
+        private Set<String> stopWords = Set.of();
+    }
+}
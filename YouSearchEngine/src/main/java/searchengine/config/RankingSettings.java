@@ -0,0 +1,16 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "ranking")
+public class RankingSettings {
+    private double k1 = 1.2;
+    private double b = 0.75;
+    private double proximityWeight = 1.0;
+}
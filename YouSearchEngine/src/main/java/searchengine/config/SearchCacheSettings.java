@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-cache")
+public class SearchCacheSettings {
+    private int maxSize = 1000;
+    private long ttl = 300_000;
+    private int prefetch = 100;
+    private int snippetCacheSize = 10_000;
+}
@@ -33,14 +33,20 @@ public class ApiController {
 
     @GetMapping("/startIndexing")
     @ResponseStatus(HttpStatus.ACCEPTED)
-    public IndexingResponse startIndexing() {
-        return indexingService.startIndexing();
+    public IndexingResponse startIndexing(@RequestParam(required = false) String site) {
+        return site == null || site.isBlank() ? indexingService.startIndexing() : indexingService.startIndexing(site);
+    }
+
+    @GetMapping("/refreshIndexing")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public IndexingResponse refreshIndexing(@RequestParam(required = false) String site) {
+        return site == null || site.isBlank() ? indexingService.refreshIndexing() : indexingService.refreshIndexing(site);
     }
 
     @GetMapping("/stopIndexing")
     @ResponseStatus(HttpStatus.OK)
-    public IndexingResponse stopIndexing() {
-        return indexingService.stopIndexing();
+    public IndexingResponse stopIndexing(@RequestParam(required = false) String site) {
+        return site == null || site.isBlank() ? indexingService.stopIndexing() : indexingService.stopIndexing(site);
     }
 
     @PostMapping(value = "/indexPage", consumes = {MediaType.APPLICATION_FORM_URLENCODED_VALUE})
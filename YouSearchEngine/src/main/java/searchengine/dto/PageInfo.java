@@ -1,11 +1,29 @@
 package searchengine.dto;
 
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 
+import java.util.Set;
+
+/**
+ * Результат загрузки страницы. HTML разбирается один раз при загрузке,
+ * и из того же документа извлекаются заголовок, текст и ссылки.
+ */
 @Data
+@Builder
 @AllArgsConstructor
 public class PageInfo {
     private String content;
     private Integer statusCode;
+    private String etag;
+    private String lastModified;
+    private String title;
+    private String text;
+    @Builder.Default
+    private Set<String> paths = Set.of();
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
 }
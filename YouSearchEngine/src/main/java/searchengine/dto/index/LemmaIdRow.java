@@ -0,0 +1,4 @@
+package searchengine.dto.index;
+
+public record LemmaIdRow(Integer id, String lemma) {
+}
@@ -0,0 +1,4 @@
+package searchengine.dto.index;
+
+public record PageVersion(Integer id, String etag, String lastModified, String contentHash) {
+}
@@ -0,0 +1,4 @@
+package searchengine.dto.index;
+
+public record PostingRow(Integer pageId, Integer lemmaId, Float rank, byte[] positions) {
+}
@@ -0,0 +1,5 @@
+package searchengine.dto.search;
+
+public record PageText(Integer id, Integer siteId, String path, String title, String text,
+                       String contentHash) {
+}
@@ -1,11 +1,10 @@
 package searchengine.dto.search;
 
-import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
 
 public record SearchData(String site, String siteName, String uri,
                          String title, String snippet, float relevance) {
-    public SearchData(PageEntity page, String title, String snippet, float relevance) {
-        this(page.getSite().getUrl(), page.getSite().getName(), page.getPath(),
-                title, snippet, relevance);
+    public SearchData(SiteEntity site, String uri, String title, String snippet, float relevance) {
+        this(site.getUrl(), site.getName(), uri, title, snippet, relevance);
     }
 }
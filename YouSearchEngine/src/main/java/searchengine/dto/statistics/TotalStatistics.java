@@ -1,4 +1,4 @@
 package searchengine.dto.statistics;
 
-public record TotalStatistics(int sites, int pages, int lemmas, boolean indexing) {
+public record TotalStatistics(int sites, int pages, int lemmas, boolean indexing, double lemmaCacheHitRate) {
 }
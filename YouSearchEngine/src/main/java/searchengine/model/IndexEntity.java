@@ -30,6 +30,10 @@ public class IndexEntity {
     @Column(nullable = false, name = "`rank`", columnDefinition = "FLOAT")
     private Float rank;
 
+    @Column(columnDefinition = "BLOB")
+    @ToString.Exclude
+    private byte[] positions;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
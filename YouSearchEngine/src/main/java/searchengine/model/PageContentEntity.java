@@ -0,0 +1,37 @@
+package searchengine.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * HTML-код страницы, сжатый deflate. Хранится отдельно от строки page, чтобы выборки страниц
+ * для поиска и обхода не тянули за собой содержимое, которое нужно только изредка.
+ */
+@Getter
+@Setter
+@ToString
+@Builder
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+@NoArgsConstructor
+@Entity
+@Table(name = "page_content")
+public class PageContentEntity {
+    @Id
+    @Column(name = "page_id", columnDefinition = "INT")
+    private Integer pageId;
+
+    @MapsId
+    @OneToOne
+    @JoinColumn(name = "page_id", columnDefinition = "INT")
+    @ToString.Exclude
+    private PageEntity page;
+
+    @Column(nullable = false, columnDefinition = "INT")
+    private Integer rawSize;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    @ToString.Exclude
+    private byte[] content;
+}
@@ -32,9 +32,22 @@ public class PageEntity {
     @Column(nullable = false, columnDefinition = "INT")
     private Integer code;
 
-    @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
+    @Column(columnDefinition = "TEXT")
     @ToString.Exclude
-    private String content;
+    private String title;
+
+    @Column(columnDefinition = "MEDIUMTEXT")
+    @ToString.Exclude
+    private String text;
+
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    @Column(columnDefinition = "CHAR(64)")
+    private String contentHash;
 
     @OneToMany(mappedBy = "page", cascade = CascadeType.ALL)
     @Builder.Default
@@ -15,7 +15,7 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor(access = AccessLevel.PACKAGE)
 @Entity
-@Table(name = "site")
+@Table(name = "site", indexes = @javax.persistence.Index(columnList = "url"))
 public class SiteEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -32,12 +32,15 @@ public class SiteEntity {
     @Column(columnDefinition = "TEXT")
     private String lastError;
 
-    @Column(nullable = false, unique = true, columnDefinition = "VARCHAR(255)")
+    @Column(nullable = false, columnDefinition = "VARCHAR(255)")
     private String url;
 
     @Column(nullable = false, columnDefinition = "VARCHAR(255)")
     private String name;
 
+    @Column(nullable = false, columnDefinition = "BOOLEAN DEFAULT TRUE")
+    private boolean serving;
+
     @OneToMany(mappedBy = "site", cascade = CascadeType.ALL)
     @Builder.Default
     @ToString.Exclude
@@ -53,11 +56,11 @@ public class SiteEntity {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         SiteEntity site = (SiteEntity) o;
-        return Objects.equals(url, site.url);
+        return Objects.equals(id, site.id) && Objects.equals(url, site.url);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(url);
+        return Objects.hash(id, url);
     }
 }
@@ -1,16 +1,22 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.index.PostingRow;
 import searchengine.model.IndexEntity;
-import searchengine.model.LemmaEntity;
-import searchengine.model.PageEntity;
 
-import java.util.Set;
+import java.util.List;
 
 public interface IndexRepository extends JpaRepository<IndexEntity, Integer> {
-    int countByLemma(LemmaEntity lemma);
+    @Query("select new searchengine.dto.index.PostingRow(i.page.id, i.lemma.id, i.rank, i.positions) " +
+            "from IndexEntity i where i.lemma.site.id = :siteId")
+    List<PostingRow> findAllPostingsBySiteId(@Param("siteId") Integer siteId);
 
-    Set<IndexEntity> findAllByLemmaAndPageIn(LemmaEntity lemma, Set<PageEntity> pages);
-
-    Set<IndexEntity> findAllByPageAndLemmaIn(PageEntity page, Set<LemmaEntity> lemmas);
+    @Modifying
+    @Transactional
+    @Query("delete from IndexEntity i where i.page.id in (select p.id from PageEntity p where p.site.id = :siteId)")
+    void deleteAllBySiteId(@Param("siteId") Integer siteId);
 }
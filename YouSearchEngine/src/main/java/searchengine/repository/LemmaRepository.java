@@ -1,16 +1,24 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.index.LemmaIdRow;
 import searchengine.model.LemmaEntity;
 import searchengine.model.SiteEntity;
 
-import java.util.Optional;
-import java.util.Set;
+import java.util.List;
 
 public interface LemmaRepository extends JpaRepository<LemmaEntity, Integer> {
-    Optional<LemmaEntity> findBySiteAndLemma(SiteEntity site, String lemma);
+    long countBySite(SiteEntity site);
 
-    Set<LemmaEntity> findAllBySite(SiteEntity site);
+    @Query("select new searchengine.dto.index.LemmaIdRow(l.id, l.lemma) from LemmaEntity l where l.site.id = :siteId")
+    List<LemmaIdRow> findAllIdsBySiteId(@Param("siteId") Integer siteId);
 
-    long countBySite(SiteEntity site);
+    @Modifying
+    @Transactional
+    @Query("delete from LemmaEntity l where l.site.id = :siteId")
+    void deleteAllBySiteId(@Param("siteId") Integer siteId);
 }
@@ -1,15 +1,38 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.index.PageVersion;
+import searchengine.dto.search.PageText;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface PageRepository extends JpaRepository<PageEntity, Integer> {
-    boolean existsBySiteIdAndPath(Integer siteId, String path);
-
     long countBySite(SiteEntity site);
 
     Optional<PageEntity> findBySiteAndPath(SiteEntity site, String path);
+
+    @Query("select new searchengine.dto.index.PageVersion(p.id, p.etag, p.lastModified, p.contentHash) " +
+            "from PageEntity p where p.site.id = :siteId and p.path = :path")
+    Optional<PageVersion> findVersionBySiteIdAndPath(@Param("siteId") Integer siteId, @Param("path") String path);
+
+    @Query("select new searchengine.dto.search.PageText(p.id, p.site.id, p.path, p.title, p.text, " +
+            "p.contentHash) " +
+            "from PageEntity p where p.id in :ids")
+    List<PageText> findAllTextsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("select p.path from PageEntity p where p.site.id = :siteId")
+    List<String> findAllPathsBySiteId(@Param("siteId") Integer siteId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from PageEntity p where p.site.id = :siteId")
+    void deleteAllBySiteId(@Param("siteId") Integer siteId);
 }
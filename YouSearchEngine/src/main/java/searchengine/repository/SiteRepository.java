@@ -1,20 +1,36 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.SiteEntity;
 import searchengine.model.SiteStatus;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 public interface SiteRepository extends JpaRepository<SiteEntity, Integer> {
     Set<SiteEntity> findAllByStatus(SiteStatus status);
 
-    boolean existsByStatus(SiteStatus status);
+    List<SiteEntity> findAllByServingTrue();
 
-    boolean existsByIdAndStatus(Integer id, SiteStatus status);
+    List<SiteEntity> findAllByServingFalse();
 
-    Optional<SiteEntity> findByUrlIgnoreCase(String url);
+    List<SiteEntity> findAllByUrlIgnoreCase(String url);
 
-    boolean existsByStatusNot(SiteStatus status);
+    Optional<SiteEntity> findByUrlIgnoreCaseAndServingTrue(String url);
+
+    boolean existsByUrlIgnoreCase(String url);
+
+    /**
+     * Делает поколение сайта обслуживающим поиск, а остальные поколения того же сайта — нет.
+     * Один UPDATE, поэтому поиск всегда видит ровно одно обслуживающее поколение.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE site SET serving = (id = :siteId) WHERE url = :url", nativeQuery = true)
+    void updateServing(@Param("url") String url, @Param("siteId") Integer siteId);
 }
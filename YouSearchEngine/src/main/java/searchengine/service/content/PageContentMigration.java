@@ -0,0 +1,57 @@
+package searchengine.service.content;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * Переносит HTML из старой колонки page.content в page_content и удаляет колонку,
+ * которую ddl-auto оставляет на месте. Перенос идёт пакетами и продолжается после перезапуска.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class PageContentMigration {
+    private static final int BATCH_SIZE = 500;
+    private final JdbcTemplate jdbcTemplate;
+    private final PageContentStore contentStore;
+
+    @PostConstruct
+    public void migrate() {
+        Integer columns = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = 'page' AND column_name = 'content'", Integer.class);
+        if (columns == null || columns == 0) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        int lastId = 0;
+        int migrated = 0;
+        while (true) {
+            List<PageContent> batch = jdbcTemplate.query("SELECT p.id, p.content FROM page p " +
+                            "LEFT JOIN page_content c ON c.page_id = p.id " +
+                            "WHERE p.id > ? AND c.page_id IS NULL AND p.content IS NOT NULL ORDER BY p.id LIMIT ?",
+                    (resultSet, row) -> new PageContent(resultSet.getInt("id"), resultSet.getString("content")),
+                    lastId, BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (PageContent page : batch) {
+                contentStore.save(page.id(), page.content());
+            }
+            lastId = batch.get(batch.size() - 1).id();
+            migrated += batch.size();
+        }
+        jdbcTemplate.execute("ALTER TABLE page DROP COLUMN content");
+        log.info("Moved content of {} pages to page_content in {} ms.", migrated,
+                System.currentTimeMillis() - startTime);
+    }
+
+    private record PageContent(Integer id, String content) {
+    }
+}
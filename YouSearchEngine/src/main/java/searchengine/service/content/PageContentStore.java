@@ -0,0 +1,87 @@
+package searchengine.service.content;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатый deflate HTML-код страниц в таблице page_content; читается только по запросу.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageContentStore {
+    private static final int BUFFER_SIZE = 8192;
+    private final JdbcTemplate jdbcTemplate;
+
+    public void save(Integer pageId, String content) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        jdbcTemplate.update("INSERT INTO page_content (page_id, raw_size, content) VALUES (?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE raw_size = VALUES(raw_size), content = VALUES(content)",
+                pageId, raw.length, compress(raw));
+    }
+
+    public Optional<String> find(Integer pageId) {
+        List<String> contents = jdbcTemplate.query("SELECT raw_size, content FROM page_content WHERE page_id = ?",
+                (resultSet, row) -> new String(decompress(resultSet.getBytes("content"), resultSet.getInt("raw_size")),
+                        StandardCharsets.UTF_8),
+                pageId);
+        return contents.stream().findFirst();
+    }
+
+    public void delete(Integer pageId) {
+        jdbcTemplate.update("DELETE FROM page_content WHERE page_id = ?", pageId);
+    }
+
+    public void deleteAllBySiteId(Integer siteId) {
+        jdbcTemplate.update("DELETE c FROM page_content c JOIN page p ON p.id = c.page_id WHERE p.site_id = ?",
+                siteId);
+    }
+
+    private static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] compressed, int rawSize) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawSize];
+            int length = 0;
+            while (length < rawSize && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, rawSize - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != rawSize) {
+                throw new IllegalStateException("Page content is corrupted");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Page content is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package searchengine.service.index;
+
+/**
+ * Курсор по блокам сжатого списка страниц: {@link #advance(int)} ищет блок по id первых страниц,
+ * не распаковывая пропущенные.
+ */
+abstract class BlockCursor implements PostingCursor {
+    private final int[] pages = new int[PostingCodec.MAX_BLOCK_SIZE];
+    private final float[] ranks = new float[PostingCodec.MAX_BLOCK_SIZE];
+    private final int[] positionOffsets = new int[PostingCodec.MAX_BLOCK_SIZE];
+    private final int[] positionLengths = new int[PostingCodec.MAX_BLOCK_SIZE];
+    private int block = -1;
+    private int count;
+    private int position;
+    private int pageId = -1;
+
+    protected abstract int blocks();
+
+    protected abstract int firstPage(int block);
+
+    /**
+     * Распаковывает блок в массивы курсора. Позиции не разбираются: для каждой записи
+     * запоминается только их место в блоке.
+     *
+     * @return число записей в блоке
+     */
+    protected abstract int decode(int block, int[] pages, float[] ranks, int[] positionOffsets,
+                                  int[] positionLengths);
+
+    protected abstract int[] positions(int block, int entry, int offset, int length);
+
+    @Override
+    public int pageId() {
+        return pageId;
+    }
+
+    @Override
+    public float rank() {
+        return ranks[position];
+    }
+
+    @Override
+    public int[] positions() {
+        return positions(block, position, positionOffsets[position], positionLengths[position]);
+    }
+
+    @Override
+    public int next() {
+        if (pageId == NO_MORE_PAGES) {
+            return NO_MORE_PAGES;
+        }
+        if (++position >= count) {
+            return load(block + 1);
+        }
+        return pageId = pages[position];
+    }
+
+    @Override
+    public int advance(int target) {
+        if (target <= pageId) {
+            return pageId;
+        }
+        int targetBlock = lastBlockStartingAtOrBefore(target);
+        if (targetBlock > block) {
+            load(targetBlock);
+        }
+        while (position < count && pages[position] < target) {
+            position++;
+        }
+        if (position < count) {
+            return pageId = pages[position];
+        }
+        return load(block + 1);
+    }
+
+    private int load(int next) {
+        if (next >= blocks()) {
+            block = blocks();
+            count = 0;
+            position = 0;
+            return pageId = NO_MORE_PAGES;
+        }
+        block = next;
+        count = decode(block, pages, ranks, positionOffsets, positionLengths);
+        position = 0;
+        return pageId = pages[0];
+    }
+
+    /**
+     * @return последний блок, начинающийся не позже {@code target}, но не раньше текущего
+     */
+    private int lastBlockStartingAtOrBefore(int target) {
+        int low = Math.max(block, 0);
+        int high = blocks() - 1;
+        int found = low;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (firstPage(middle) <= target) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+}
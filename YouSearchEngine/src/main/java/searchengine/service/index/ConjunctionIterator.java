@@ -0,0 +1,63 @@
+package searchengine.service.index;
+
+import java.util.List;
+
+/**
+ * Пересечение итераторов: ведущий предлагает страницу, остальные догоняют её через advance.
+ * Совпавшая страница дополнительно проверяется {@link #matches()}.
+ */
+class ConjunctionIterator implements PageIterator {
+    private final PageIterator[] iterators;
+    private int pageId = -1;
+
+    /**
+     * @param iterators итераторы в порядке возрастания длины
+     */
+    ConjunctionIterator(List<? extends PageIterator> iterators) {
+        this.iterators = iterators.toArray(PageIterator[]::new);
+    }
+
+    @Override
+    public int pageId() {
+        return pageId;
+    }
+
+    @Override
+    public int next() {
+        return pageId == NO_MORE_PAGES ? NO_MORE_PAGES : align(iterators[0].next());
+    }
+
+    @Override
+    public int advance(int target) {
+        return target <= pageId ? pageId : align(iterators[0].advance(target));
+    }
+
+    /**
+     * Проверка страницы, на которой стоят все итераторы, например по позициям слов.
+     */
+    protected boolean matches() {
+        return true;
+    }
+
+    private int align(int candidate) {
+        while (candidate != NO_MORE_PAGES) {
+            int found = candidate;
+            for (int i = 1; i < iterators.length && found == candidate; i++) {
+                found = iterators[i].advance(candidate);
+            }
+            if (found == NO_MORE_PAGES) {
+                break;
+            }
+            if (found != candidate) {
+                candidate = iterators[0].advance(found);
+            } else {
+                pageId = candidate;
+                if (matches()) {
+                    return pageId;
+                }
+                candidate = iterators[0].next();
+            }
+        }
+        return pageId = NO_MORE_PAGES;
+    }
+}
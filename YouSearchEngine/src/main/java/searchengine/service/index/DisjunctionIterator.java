@@ -0,0 +1,71 @@
+package searchengine.service.index;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Объединение итераторов слиянием через кучу по id текущей страницы: на каждом шаге
+ * сдвигаются только итераторы, стоящие на самой маленькой странице.
+ */
+class DisjunctionIterator implements PageIterator {
+    private final List<? extends PageIterator> iterators;
+    private final PriorityQueue<PageIterator> queue;
+    private int pageId = -1;
+
+    DisjunctionIterator(List<? extends PageIterator> iterators) {
+        this.iterators = iterators;
+        this.queue = new PriorityQueue<>(iterators.size(), Comparator.comparingInt(PageIterator::pageId));
+    }
+
+    @Override
+    public int pageId() {
+        return pageId;
+    }
+
+    @Override
+    public int next() {
+        if (pageId == NO_MORE_PAGES) {
+            return NO_MORE_PAGES;
+        }
+        if (pageId < 0) {
+            for (PageIterator iterator : iterators) {
+                offer(iterator, iterator.next());
+            }
+        } else {
+            while (!queue.isEmpty() && queue.peek().pageId() == pageId) {
+                PageIterator iterator = queue.poll();
+                offer(iterator, iterator.next());
+            }
+        }
+        return current();
+    }
+
+    @Override
+    public int advance(int target) {
+        if (target <= pageId) {
+            return pageId;
+        }
+        if (pageId < 0) {
+            for (PageIterator iterator : iterators) {
+                offer(iterator, iterator.advance(target));
+            }
+        } else {
+            while (!queue.isEmpty() && queue.peek().pageId() < target) {
+                PageIterator iterator = queue.poll();
+                offer(iterator, iterator.advance(target));
+            }
+        }
+        return current();
+    }
+
+    private void offer(PageIterator iterator, int found) {
+        if (found != NO_MORE_PAGES) {
+            queue.add(iterator);
+        }
+    }
+
+    private int current() {
+        return pageId = queue.isEmpty() ? NO_MORE_PAGES : queue.peek().pageId();
+    }
+}
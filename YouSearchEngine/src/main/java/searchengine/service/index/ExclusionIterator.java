@@ -0,0 +1,37 @@
+package searchengine.service.index;
+
+/**
+ * Страницы одного итератора, которых нет у другого. Исключаемый итератор не перебирается
+ * целиком, а только догоняет через {@link PageIterator#advance(int)} очередную найденную страницу.
+ */
+class ExclusionIterator implements PageIterator {
+    private final PageIterator included;
+    private final PageIterator excluded;
+
+    ExclusionIterator(PageIterator included, PageIterator excluded) {
+        this.included = included;
+        this.excluded = excluded;
+    }
+
+    @Override
+    public int pageId() {
+        return included.pageId();
+    }
+
+    @Override
+    public int next() {
+        return skipExcluded(included.next());
+    }
+
+    @Override
+    public int advance(int target) {
+        return target <= included.pageId() ? included.pageId() : skipExcluded(included.advance(target));
+    }
+
+    private int skipExcluded(int candidate) {
+        while (candidate != NO_MORE_PAGES && excluded.advance(candidate) == candidate) {
+            candidate = included.next();
+        }
+        return candidate;
+    }
+}
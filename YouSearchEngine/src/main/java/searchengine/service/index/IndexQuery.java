@@ -0,0 +1,49 @@
+package searchengine.service.index;
+
+import java.util.List;
+
+/**
+ * Запрос к индексу одного сайта, в котором слова уже заменены на id лемм этого сайта.
+ */
+public sealed interface IndexQuery {
+    /**
+     * Слово запроса. Страница должна содержать все его леммы, а позиция слова —
+     * позиция, общая для всех его лемм. Леммы без страниц на сайте не учитываются.
+     */
+    record Term(List<Integer> lemmaIds) implements IndexQuery {
+    }
+
+    /**
+     * Фраза в кавычках: слова стоят на странице с теми же промежутками, что и в запросе.
+     *
+     * @param offsets номера слов в запросе; стоп-слова не индексируются, но занимают свои номера
+     */
+    record Phrase(List<Term> terms, List<Integer> offsets) implements IndexQuery {
+    }
+
+    /**
+     * Два слова на расстоянии не больше {@code distance} слов друг от друга в любом порядке.
+     */
+    record Near(Term left, Term right, int distance) implements IndexQuery {
+    }
+
+    /**
+     * Все условия одновременно. Слова, которых нет на сайте, из условия выпадают.
+     * Соседние слова условия, оказавшиеся рядом на странице, повышают её ранг.
+     * Условия {@link Not} исключают страницы; условие только из них не находит ничего.
+     */
+    record And(List<IndexQuery> clauses) implements IndexQuery {
+    }
+
+    /**
+     * Хотя бы одно из условий.
+     */
+    record Or(List<IndexQuery> clauses) implements IndexQuery {
+    }
+
+    /**
+     * Страницы, не подходящие под условие. Имеет смысл только внутри {@link And}.
+     */
+    record Not(IndexQuery clause) implements IndexQuery {
+    }
+}
@@ -0,0 +1,201 @@
+package searchengine.service.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexSegmentSettings;
+import searchengine.config.RankingSettings;
+import searchengine.dto.index.PostingRow;
+import searchengine.model.SiteEntity;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.SiteRepository;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Индекс обслуживающих поиск поколений сайтов в памяти или в файлах {@link Segment}.
+ * Каждое изменение сайта меняет его версию для кэша результатов поиска.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InvertedIndex {
+    private final IndexRepository indexRepository;
+    private final SiteRepository siteRepository;
+    private final RankingSettings rankingSettings;
+    private final IndexSegmentSettings segmentSettings;
+    private final Map<Integer, SiteIndex> sites = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+    private final Set<Integer> removedSites = ConcurrentHashMap.newKeySet();
+    private final AtomicLong modifications = new AtomicLong();
+
+    @PostConstruct
+    public void load() {
+        List<SiteEntity> servingSites = siteRepository.findAllByServingTrue();
+        deleteOrphanSegments(servingSites.stream().map(SiteEntity::getId).collect(Collectors.toSet()));
+        for (SiteEntity site : servingSites) {
+            long startTime = System.currentTimeMillis();
+            if (openSegment(site)) {
+                log.info("Opened index segment of site {} in {} ms.", site.getUrl(),
+                        System.currentTimeMillis() - startTime);
+                continue;
+            }
+            SiteIndex siteIndex = getSiteIndex(site.getId());
+            for (PostingRow row : indexRepository.findAllPostingsBySiteId(site.getId())) {
+                siteIndex.add(row.pageId(), row.lemmaId(), row.rank(),
+                        row.positions() == null ? Positions.NONE : row.positions());
+            }
+            log.info("Loaded {} lemmas for site {} in {} ms.", siteIndex.lemmasCount(), site.getUrl(),
+                    System.currentTimeMillis() - startTime);
+        }
+    }
+
+    public void addPage(Integer siteId, Integer pageId, Map<Integer, int[]> lemmas) {
+        SiteIndex siteIndex = getSiteIndex(siteId);
+        if (siteIndex == null) {
+            return;
+        }
+        siteIndex.addPage(pageId, lemmas);
+        modified(siteId);
+    }
+
+    public void removePage(Integer siteId, Integer pageId, Collection<Integer> lemmaIds) {
+        SiteIndex siteIndex = sites.get(siteId);
+        if (siteIndex == null) {
+            return;
+        }
+        siteIndex.removePage(pageId, lemmaIds);
+        modified(siteId);
+    }
+
+    public void replacePage(Integer siteId, Integer pageId, Collection<Integer> oldLemmaIds,
+                            Map<Integer, int[]> lemmas) {
+        SiteIndex siteIndex = getSiteIndex(siteId);
+        if (siteIndex == null) {
+            return;
+        }
+        siteIndex.replacePage(pageId, oldLemmaIds, lemmas);
+        modified(siteId);
+    }
+
+    public Map<Integer, Double> search(Integer siteId, IndexQuery query) {
+        SiteIndex siteIndex = sites.get(siteId);
+        return siteIndex == null ? Map.of() : siteIndex.search(query, rankingSettings.getK1(), rankingSettings.getB(),
+                rankingSettings.getProximityWeight());
+    }
+
+    public Map<Integer, int[]> positions(Integer siteId, Integer pageId, Collection<Integer> lemmaIds) {
+        SiteIndex siteIndex = sites.get(siteId);
+        return siteIndex == null ? Map.of() : siteIndex.positions(pageId, lemmaIds);
+    }
+
+    /**
+     * Сохраняет индекс сайта в файл и переключает поиск по сайту на него.
+     * Ошибка записи не мешает поиску: индекс остаётся в памяти.
+     */
+    public void writeSegment(Integer siteId) {
+        SiteIndex siteIndex = sites.get(siteId);
+        if (!segmentSettings.isEnabled() || siteIndex == null) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            siteIndex.writeSegment(segmentFile(siteId), siteId);
+            log.info("Wrote index segment of site with id {} in {} ms.", siteId,
+                    System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            log.error("Failed to write index segment of site with id " + siteId, e);
+        }
+    }
+
+    public long version(Integer siteId) {
+        return versions.getOrDefault(siteId, 0L);
+    }
+
+    public void removeSite(Integer siteId) {
+        removedSites.add(siteId);
+        SiteIndex siteIndex = sites.remove(siteId);
+        if (siteIndex != null) {
+            siteIndex.deleteSegment();
+        }
+        modified(siteId);
+    }
+
+    public void clear() {
+        sites.keySet().forEach(this::modified);
+        sites.values().forEach(SiteIndex::deleteSegment);
+        sites.clear();
+    }
+
+    private boolean openSegment(SiteEntity site) {
+        Path file = segmentFile(site.getId());
+        if (!segmentSettings.isEnabled() || !Files.exists(file)) {
+            return false;
+        }
+        try {
+            sites.put(site.getId(), new SiteIndex(Segment.open(file, site.getId())));
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to open index segment of site {}, loading from database: {}", site.getUrl(),
+                    e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Файлы удалённых и необслуживающих поколений сайтов больше не нужны.
+     */
+    private void deleteOrphanSegments(Set<Integer> servingSiteIds) {
+        Path directory = Paths.get(segmentSettings.getDirectory());
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "site-*.seg*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!servingSiteIds.contains(segmentSiteId(name)) || name.endsWith(".tmp")
+                        || !segmentSettings.isEnabled()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to delete orphan index segments", e);
+        }
+    }
+
+    private Path segmentFile(Integer siteId) {
+        return Paths.get(segmentSettings.getDirectory(), "site-" + siteId + ".seg");
+    }
+
+    private static Integer segmentSiteId(String fileName) {
+        String id = fileName.substring("site-".length(), fileName.indexOf(".seg"));
+        try {
+            return Integer.valueOf(id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void modified(Integer siteId) {
+        versions.put(siteId, modifications.incrementAndGet());
+    }
+
+    /**
+     * @return индекс сайта или null, если сайт удалён: запоздавшие страницы не должны вернуть его индекс
+     */
+    private SiteIndex getSiteIndex(Integer siteId) {
+        return sites.computeIfAbsent(siteId, id -> removedSites.contains(id) ? null : new SiteIndex());
+    }
+}
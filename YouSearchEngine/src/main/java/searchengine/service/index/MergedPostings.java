@@ -0,0 +1,70 @@
+package searchengine.service.index;
+
+import java.util.Set;
+
+/**
+ * Список страниц леммы из файла индекса с изменениями после его записи: страницы из {@code hidden}
+ * в файле пропускаются, а страницы из {@code delta} добавляются.
+ */
+class MergedPostings implements PostingList {
+    private final PostingList segment;
+    private final PostingList delta;
+    private final Set<Integer> hidden;
+    private final int size;
+
+    MergedPostings(PostingList segment, PostingList delta, Set<Integer> hidden, int size) {
+        this.segment = segment;
+        this.delta = delta;
+        this.hidden = hidden;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public PostingCursor cursor() {
+        PostingCursor segmentCursor = segment.cursor();
+        PostingCursor deltaCursor = delta == null ? null : delta.cursor();
+        return new PostingCursor() {
+            private PostingCursor current;
+            private int pageId = -1;
+
+            @Override
+            public int pageId() {
+                return pageId;
+            }
+
+            @Override
+            public float rank() {
+                return current.rank();
+            }
+
+            @Override
+            public int[] positions() {
+                return current.positions();
+            }
+
+            @Override
+            public int next() {
+                return advance(pageId + 1);
+            }
+
+            @Override
+            public int advance(int target) {
+                if (target <= pageId || pageId == NO_MORE_PAGES) {
+                    return pageId;
+                }
+                int segmentPage = segmentCursor.advance(target);
+                while (segmentPage != NO_MORE_PAGES && hidden.contains(segmentPage)) {
+                    segmentPage = segmentCursor.next();
+                }
+                int deltaPage = deltaCursor == null ? NO_MORE_PAGES : deltaCursor.advance(target);
+                current = deltaPage <= segmentPage ? deltaCursor : segmentCursor;
+                return pageId = Math.min(segmentPage, deltaPage);
+            }
+        };
+    }
+}
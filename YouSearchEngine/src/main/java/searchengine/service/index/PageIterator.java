@@ -0,0 +1,27 @@
+package searchengine.service.index;
+
+/**
+ * Перебор страниц в порядке возрастания id. До первого вызова {@link #next()}
+ * или {@link #advance(int)} итератор стоит перед первой страницей.
+ */
+interface PageIterator {
+    int NO_MORE_PAGES = Integer.MAX_VALUE;
+
+    /**
+     * @return id текущей страницы, -1 до начала обхода или {@link #NO_MORE_PAGES} после конца
+     */
+    int pageId();
+
+    /**
+     * @return id следующей страницы или {@link #NO_MORE_PAGES}
+     */
+    int next();
+
+    /**
+     * Переходит к первой странице с id не меньше {@code target}, пропуская всё, что можно
+     * пропустить без проверки. Если итератор уже на такой странице, остаётся на месте.
+     *
+     * @return id найденной страницы или {@link #NO_MORE_PAGES}
+     */
+    int advance(int target);
+}
@@ -0,0 +1,84 @@
+package searchengine.service.index;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Номера слов леммы на странице: разности соседних номеров в формате varint.
+ */
+public final class Positions {
+    public static final byte[] NONE = new byte[0];
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private Positions() {
+    }
+
+    public static byte[] encode(int[] positions) {
+        if (positions.length == 0) {
+            return NONE;
+        }
+        byte[] data = new byte[positions.length * 5];
+        int length = 0;
+        int previous = 0;
+        for (int position : positions) {
+            int value = position - previous;
+            previous = position;
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+        return Arrays.copyOf(data, length);
+    }
+
+    public static int[] decode(byte[] data) {
+        return data == null ? NO_POSITIONS : decode(data, 0, data.length);
+    }
+
+    static int[] decode(byte[] data, int offset, int length) {
+        if (length == 0) {
+            return NO_POSITIONS;
+        }
+        int[] positions = new int[length];
+        int count = 0;
+        int position = 0;
+        int end = offset + length;
+        while (offset < end) {
+            int delta = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte value = data[offset++];
+                delta |= (value & 0x7F) << shift;
+                if (value >= 0) {
+                    break;
+                }
+            }
+            position += delta;
+            positions[count++] = position;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    static int[] decode(ByteBuffer data, int offset, int length) {
+        if (length == 0) {
+            return NO_POSITIONS;
+        }
+        int[] positions = new int[length];
+        int count = 0;
+        int position = 0;
+        int end = offset + length;
+        while (offset < end) {
+            int delta = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte value = data.get(offset++);
+                delta |= (value & 0x7F) << shift;
+                if (value >= 0) {
+                    break;
+                }
+            }
+            position += delta;
+            positions[count++] = position;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+}
@@ -0,0 +1,146 @@
+package searchengine.service.index;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Сжатие блоков списков страниц: разности id, ранг и размер позиций в формате varint,
+ * затем сами позиции в формате {@link Positions}.
+ */
+final class PostingCodec {
+    static final int BLOCK_SIZE = 128;
+    static final int MAX_BLOCK_SIZE = BLOCK_SIZE * 2;
+
+    private PostingCodec() {
+    }
+
+    static int quantize(float rank) {
+        return Math.max(0, Math.round(rank));
+    }
+
+    static byte[] encode(int[] pages, float[] ranks, byte[][] positions, int from, int count) {
+        byte[] data = new byte[count * 3 + 8];
+        int length = 0;
+        for (int i = from; i < from + count; i++) {
+            if (data.length - length < 15 + positions[i].length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 15 + positions[i].length));
+            }
+            if (i > from) {
+                length = writeVarint(data, length, pages[i] - pages[i - 1]);
+            }
+            length = writeVarint(data, length, quantize(ranks[i]));
+            length = writeVarint(data, length, positions[i].length);
+            System.arraycopy(positions[i], 0, data, length, positions[i].length);
+            length += positions[i].length;
+        }
+        return Arrays.copyOf(data, length);
+    }
+
+    /**
+     * Разбирает блок. Для позиций записываются только смещение и размер внутри {@code data}.
+     */
+    static void decode(byte[] data, int firstPage, int count, int[] pages, float[] ranks,
+                       int[] positionOffsets, int[] positionLengths) {
+        int offset = 0;
+        int pageId = firstPage;
+        for (int i = 0; i < count; i++) {
+            long read;
+            if (i > 0) {
+                read = readVarint(data, offset);
+                pageId += value(read);
+                offset = offset(read);
+            }
+            read = readVarint(data, offset);
+            ranks[i] = value(read);
+            read = readVarint(data, offset(read));
+            pages[i] = pageId;
+            positionOffsets[i] = offset(read);
+            positionLengths[i] = value(read);
+            offset = positionOffsets[i] + positionLengths[i];
+        }
+    }
+
+    static void decode(ByteBuffer data, int offset, int firstPage, int count, int[] pages, float[] ranks,
+                       int[] positionOffsets, int[] positionLengths) {
+        int pageId = firstPage;
+        for (int i = 0; i < count; i++) {
+            long read;
+            if (i > 0) {
+                read = readVarint(data, offset);
+                pageId += value(read);
+                offset = offset(read);
+            }
+            read = readVarint(data, offset);
+            ranks[i] = value(read);
+            read = readVarint(data, offset(read));
+            pages[i] = pageId;
+            positionOffsets[i] = offset(read);
+            positionLengths[i] = value(read);
+            offset = positionOffsets[i] + positionLengths[i];
+        }
+    }
+
+    /**
+     * Ищет страницу в блоке, разбирая записи только до первой страницы с большим id.
+     */
+    static boolean contains(byte[] data, int firstPage, int count, int target) {
+        int offset = 0;
+        int pageId = firstPage;
+        for (int i = 0; i < count && pageId <= target; i++) {
+            long read;
+            if (i > 0) {
+                read = readVarint(data, offset);
+                pageId += value(read);
+                offset = offset(read);
+            }
+            if (pageId == target) {
+                return true;
+            }
+            read = readVarint(data, offset(readVarint(data, offset)));
+            offset = offset(read) + value(read);
+        }
+        return false;
+    }
+
+    /**
+     * @return значение в старших 32 битах и смещение следующего байта в младших
+     */
+    private static long readVarint(byte[] data, int offset) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte value = data[offset++];
+            result |= (value & 0x7F) << shift;
+            if (value >= 0) {
+                return (long) result << 32 | offset;
+            }
+        }
+    }
+
+    private static long readVarint(ByteBuffer data, int offset) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte value = data.get(offset++);
+            result |= (value & 0x7F) << shift;
+            if (value >= 0) {
+                return (long) result << 32 | offset;
+            }
+        }
+    }
+
+    private static int value(long read) {
+        return (int) (read >>> 32);
+    }
+
+    private static int offset(long read) {
+        return (int) read;
+    }
+
+    private static int writeVarint(byte[] data, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[offset++] = (byte) value;
+        return offset;
+    }
+}
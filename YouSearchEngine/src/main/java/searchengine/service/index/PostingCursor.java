@@ -0,0 +1,13 @@
+package searchengine.service.index;
+
+/**
+ * Курсор по списку страниц леммы с рангом и позициями леммы на текущей странице.
+ */
+interface PostingCursor extends PageIterator {
+    float rank();
+
+    /**
+     * @return номера слов леммы на текущей странице по возрастанию; пусто, если позиции не сохранялись
+     */
+    int[] positions();
+}
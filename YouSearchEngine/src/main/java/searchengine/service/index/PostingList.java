@@ -0,0 +1,10 @@
+package searchengine.service.index;
+
+/**
+ * Список страниц леммы, отсортированный по id страницы, с рангом леммы на каждой странице.
+ */
+interface PostingList {
+    int size();
+
+    PostingCursor cursor();
+}
@@ -0,0 +1,258 @@
+package searchengine.service.index;
+
+import java.util.Arrays;
+
+/**
+ * Изменяемый список страниц леммы: сжатые {@link PostingCodec} блоки и несжатый хвост
+ * из последних добавленных страниц.
+ */
+class Postings implements PostingList {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int[] NO_BLOCKS = new int[0];
+    private static final byte[][] NO_DATA = new byte[0][];
+    private int[] firstPages = NO_BLOCKS;
+    private int[] lastPages = NO_BLOCKS;
+    private int[] counts = NO_BLOCKS;
+    private byte[][] data = NO_DATA;
+    private int blocks;
+    private int[] tailPages = new int[INITIAL_CAPACITY];
+    private float[] tailRanks = new float[INITIAL_CAPACITY];
+    private byte[][] tailPositions = new byte[INITIAL_CAPACITY][];
+    private int tailCount;
+    private int size;
+
+    /**
+     * @param positions позиции леммы на странице, сжатые {@link Positions}
+     */
+    void add(int pageId, float rank, byte[] positions) {
+        if (blocks == 0 || pageId > lastPages[blocks - 1]) {
+            addToTail(pageId, rank, positions);
+            return;
+        }
+        int block = findBlock(pageId);
+        Block entries = decode(block);
+        int count = entries.count();
+        int position = Arrays.binarySearch(entries.pages(), 0, count, pageId);
+        if (position >= 0) {
+            entries.ranks()[position] = rank;
+            entries.positions()[position] = positions;
+            setBlock(block, entries, 0, count);
+            return;
+        }
+        int insertion = -position - 1;
+        System.arraycopy(entries.pages(), insertion, entries.pages(), insertion + 1, count - insertion);
+        System.arraycopy(entries.ranks(), insertion, entries.ranks(), insertion + 1, count - insertion);
+        System.arraycopy(entries.positions(), insertion, entries.positions(), insertion + 1, count - insertion);
+        entries.pages()[insertion] = pageId;
+        entries.ranks()[insertion] = rank;
+        entries.positions()[insertion] = positions;
+        count++;
+        size++;
+        if (count < PostingCodec.MAX_BLOCK_SIZE) {
+            setBlock(block, entries, 0, count);
+            return;
+        }
+        int half = count / 2;
+        insertBlock(block + 1);
+        setBlock(block, entries, 0, half);
+        setBlock(block + 1, entries, half, count - half);
+    }
+
+    boolean remove(int pageId) {
+        if (tailCount > 0 && pageId >= tailPages[0]) {
+            int position = Arrays.binarySearch(tailPages, 0, tailCount, pageId);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(tailPages, position + 1, tailPages, position, tailCount - position - 1);
+            System.arraycopy(tailRanks, position + 1, tailRanks, position, tailCount - position - 1);
+            System.arraycopy(tailPositions, position + 1, tailPositions, position, tailCount - position - 1);
+            tailCount--;
+            tailPositions[tailCount] = null;
+            size--;
+            return true;
+        }
+        if (blocks == 0 || pageId < firstPages[0] || pageId > lastPages[blocks - 1]) {
+            return false;
+        }
+        int block = findBlock(pageId);
+        if (pageId > lastPages[block] || !PostingCodec.contains(data[block], firstPages[block], counts[block], pageId)) {
+            return false;
+        }
+        Block entries = decode(block);
+        int count = entries.count();
+        int position = Arrays.binarySearch(entries.pages(), 0, count, pageId);
+        System.arraycopy(entries.pages(), position + 1, entries.pages(), position, count - position - 1);
+        System.arraycopy(entries.ranks(), position + 1, entries.ranks(), position, count - position - 1);
+        System.arraycopy(entries.positions(), position + 1, entries.positions(), position, count - position - 1);
+        count--;
+        size--;
+        if (count == 0) {
+            removeBlock(block);
+        } else {
+            setBlock(block, entries, 0, count);
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public PostingCursor cursor() {
+        return new BlockCursor() {
+            @Override
+            protected int blocks() {
+                return blocks + (tailCount > 0 ? 1 : 0);
+            }
+
+            @Override
+            protected int firstPage(int block) {
+                return block < blocks ? firstPages[block] : tailPages[0];
+            }
+
+            @Override
+            protected int decode(int block, int[] pages, float[] ranks, int[] positionOffsets,
+                                 int[] positionLengths) {
+                if (block < blocks) {
+                    PostingCodec.decode(data[block], firstPages[block], counts[block], pages, ranks,
+                            positionOffsets, positionLengths);
+                    return counts[block];
+                }
+                System.arraycopy(tailPages, 0, pages, 0, tailCount);
+                System.arraycopy(tailRanks, 0, ranks, 0, tailCount);
+                for (int i = 0; i < tailCount; i++) {
+                    positionOffsets[i] = 0;
+                    positionLengths[i] = tailPositions[i].length;
+                }
+                return tailCount;
+            }
+
+            @Override
+            protected int[] positions(int block, int entry, int offset, int length) {
+                return block < blocks
+                        ? Positions.decode(data[block], offset, length)
+                        : Positions.decode(tailPositions[entry], offset, length);
+            }
+        };
+    }
+
+    /**
+     * Передаёт все блоки в сжатом виде, хвост сжимается отдельным блоком.
+     */
+    void forEachBlock(BlockConsumer consumer) {
+        for (int block = 0; block < blocks; block++) {
+            consumer.accept(firstPages[block], counts[block], data[block]);
+        }
+        if (tailCount > 0) {
+            consumer.accept(tailPages[0], tailCount,
+                    PostingCodec.encode(tailPages, tailRanks, tailPositions, 0, tailCount));
+        }
+    }
+
+    private void addToTail(int pageId, float rank, byte[] positions) {
+        if (tailCount > 0 && pageId <= tailPages[tailCount - 1]) {
+            int position = Arrays.binarySearch(tailPages, 0, tailCount, pageId);
+            if (position >= 0) {
+                tailRanks[position] = rank;
+                tailPositions[position] = positions;
+                return;
+            }
+            int insertion = -position - 1;
+            ensureTailCapacity();
+            System.arraycopy(tailPages, insertion, tailPages, insertion + 1, tailCount - insertion);
+            System.arraycopy(tailRanks, insertion, tailRanks, insertion + 1, tailCount - insertion);
+            System.arraycopy(tailPositions, insertion, tailPositions, insertion + 1, tailCount - insertion);
+            tailPages[insertion] = pageId;
+            tailRanks[insertion] = rank;
+            tailPositions[insertion] = positions;
+        } else {
+            ensureTailCapacity();
+            tailPages[tailCount] = pageId;
+            tailRanks[tailCount] = rank;
+            tailPositions[tailCount] = positions;
+        }
+        tailCount++;
+        size++;
+        if (tailCount == PostingCodec.BLOCK_SIZE) {
+            insertBlock(blocks);
+            setBlock(blocks - 1, new Block(tailPages, tailRanks, tailPositions, tailCount), 0, tailCount);
+            Arrays.fill(tailPositions, null);
+            tailCount = 0;
+        }
+    }
+
+    /**
+     * @return последний блок, первая страница которого не больше {@code pageId}, или 0
+     */
+    private int findBlock(int pageId) {
+        int position = Arrays.binarySearch(firstPages, 0, blocks, pageId);
+        return position >= 0 ? position : Math.max(0, -position - 2);
+    }
+
+    /**
+     * Распаковывает блок для изменения, копируя позиции каждой записи.
+     */
+    private Block decode(int block) {
+        int count = counts[block];
+        Block entries = new Block(new int[PostingCodec.MAX_BLOCK_SIZE], new float[PostingCodec.MAX_BLOCK_SIZE],
+                new byte[PostingCodec.MAX_BLOCK_SIZE][], count);
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        PostingCodec.decode(data[block], firstPages[block], count, entries.pages(), entries.ranks(), offsets, lengths);
+        for (int i = 0; i < count; i++) {
+            entries.positions()[i] = Arrays.copyOfRange(data[block], offsets[i], offsets[i] + lengths[i]);
+        }
+        return entries;
+    }
+
+    private void setBlock(int block, Block entries, int from, int count) {
+        firstPages[block] = entries.pages()[from];
+        lastPages[block] = entries.pages()[from + count - 1];
+        counts[block] = count;
+        data[block] = PostingCodec.encode(entries.pages(), entries.ranks(), entries.positions(), from, count);
+    }
+
+    private void insertBlock(int block) {
+        if (blocks == firstPages.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, blocks * 2);
+            firstPages = Arrays.copyOf(firstPages, capacity);
+            lastPages = Arrays.copyOf(lastPages, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            data = Arrays.copyOf(data, capacity);
+        }
+        System.arraycopy(firstPages, block, firstPages, block + 1, blocks - block);
+        System.arraycopy(lastPages, block, lastPages, block + 1, blocks - block);
+        System.arraycopy(counts, block, counts, block + 1, blocks - block);
+        System.arraycopy(data, block, data, block + 1, blocks - block);
+        blocks++;
+    }
+
+    private void removeBlock(int block) {
+        System.arraycopy(firstPages, block + 1, firstPages, block, blocks - block - 1);
+        System.arraycopy(lastPages, block + 1, lastPages, block, blocks - block - 1);
+        System.arraycopy(counts, block + 1, counts, block, blocks - block - 1);
+        System.arraycopy(data, block + 1, data, block, blocks - block - 1);
+        blocks--;
+        data[blocks] = null;
+    }
+
+    private void ensureTailCapacity() {
+        if (tailCount == tailPages.length) {
+            int capacity = Math.min(tailCount * 2, PostingCodec.BLOCK_SIZE);
+            tailPages = Arrays.copyOf(tailPages, capacity);
+            tailRanks = Arrays.copyOf(tailRanks, capacity);
+            tailPositions = Arrays.copyOf(tailPositions, capacity);
+        }
+    }
+
+    @FunctionalInterface
+    interface BlockConsumer {
+        void accept(int firstPage, int count, byte[] data);
+    }
+
+    private record Block(int[] pages, float[] ranks, byte[][] positions, int count) {
+    }
+}
@@ -0,0 +1,276 @@
+package searchengine.service.index;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Выполняет {@link IndexQuery} деревом итераторов по спискам страниц и считает BM25
+ * с добавкой за близость слов запроса на странице.
+ */
+class QueryExecutor {
+    private final IntFunction<PostingList> postings;
+    private final IntToDoubleFunction pageLength;
+    private final int pages;
+    private final double averageLength;
+    private final double k1;
+    private final double b;
+    private final double proximityWeight;
+    private final Map<Integer, PostingCursor> scoringCursors = new LinkedHashMap<>();
+    private final Map<Integer, Double> idf = new HashMap<>();
+    private final List<TermIterator> proximityTerms = new ArrayList<>();
+    private int negations;
+
+    QueryExecutor(IntFunction<PostingList> postings, IntToDoubleFunction pageLength, int pages, double totalLength,
+                  double k1, double b, double proximityWeight) {
+        this.postings = postings;
+        this.pageLength = pageLength;
+        this.pages = pages;
+        this.averageLength = pages == 0 ? 1 : totalLength / pages;
+        this.k1 = k1;
+        this.b = b;
+        this.proximityWeight = proximityWeight;
+    }
+
+    Map<Integer, Double> execute(IndexQuery query) {
+        Node root = query instanceof IndexQuery.And all ? and(all, true) : build(query);
+        if (root == null) {
+            return Map.of();
+        }
+        Map<Integer, Double> pageRank = new HashMap<>();
+        PageIterator iterator = root.iterator();
+        for (int pageId = iterator.next(); pageId != PageIterator.NO_MORE_PAGES; pageId = iterator.next()) {
+            pageRank.put(pageId, score(pageId));
+        }
+        return pageRank;
+    }
+
+    /**
+     * Отрицание вне {@link IndexQuery.And} не учитывается: для него пришлось бы перебирать
+     * все страницы сайта.
+     *
+     * @return узел дерева или null, если условие не находит ни одной страницы
+     */
+    private Node build(IndexQuery query) {
+        if (query instanceof IndexQuery.Term term) {
+            return term(term);
+        }
+        if (query instanceof IndexQuery.Phrase phrase) {
+            return phrase(phrase);
+        }
+        if (query instanceof IndexQuery.Near near) {
+            return near(near);
+        }
+        if (query instanceof IndexQuery.Or or) {
+            return or(or);
+        }
+        if (query instanceof IndexQuery.Not) {
+            return null;
+        }
+        return and((IndexQuery.And) query, false);
+    }
+
+    private Node term(IndexQuery.Term term) {
+        List<PostingCursor> cursors = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        for (Integer lemmaId : term.lemmaIds()) {
+            PostingList list = postings.apply(lemmaId);
+            if (list == null || list.size() == 0) {
+                continue;
+            }
+            PostingCursor cursor = list.cursor();
+            if (negations == 0) {
+                scoringCursors.computeIfAbsent(lemmaId, id -> list.cursor());
+                idf.put(lemmaId, Math.log(1 + (pages - list.size() + 0.5) / (list.size() + 0.5)));
+            }
+            int index = 0;
+            while (index < sizes.size() && sizes.get(index) <= list.size()) {
+                index++;
+            }
+            cursors.add(index, cursor);
+            sizes.add(index, list.size());
+        }
+        return cursors.isEmpty() ? null : new Node(new TermIterator(cursors), sizes.get(0));
+    }
+
+    private Node phrase(IndexQuery.Phrase phrase) {
+        List<Node> terms = new ArrayList<>();
+        for (IndexQuery.Term term : phrase.terms()) {
+            Node node = term(term);
+            if (node == null) {
+                return null;
+            }
+            terms.add(node);
+        }
+        List<TermIterator> ordered = terms.stream().map(node -> (TermIterator) node.iterator()).toList();
+        int[] offsets = phrase.offsets().stream().mapToInt(Integer::intValue).toArray();
+        return conjunction(terms, iterators -> new ConjunctionIterator(iterators) {
+            @Override
+            protected boolean matches() {
+                return phraseMatches(ordered, offsets);
+            }
+        });
+    }
+
+    private Node near(IndexQuery.Near near) {
+        Node left = term(near.left());
+        Node right = term(near.right());
+        if (left == null || right == null) {
+            return null;
+        }
+        TermIterator leftTerm = (TermIterator) left.iterator();
+        TermIterator rightTerm = (TermIterator) right.iterator();
+        return conjunction(List.of(left, right), iterators -> new ConjunctionIterator(iterators) {
+            @Override
+            protected boolean matches() {
+                int distance = minDistance(leftTerm.positions(), rightTerm.positions());
+                return distance > 0 && distance <= near.distance();
+            }
+        });
+    }
+
+    /**
+     * Слово, которого нет на сайте, выпадает из условия. Внутри исключения так нельзя:
+     * условие с таким словом не исключает ни одной страницы.
+     *
+     * @param root условие верхнего уровня: его слова участвуют в добавке за близость
+     */
+    private Node and(IndexQuery.And and, boolean root) {
+        List<Node> clauses = new ArrayList<>();
+        List<Node> exclusions = new ArrayList<>();
+        for (IndexQuery clause : and.clauses()) {
+            if (clause instanceof IndexQuery.Not not) {
+                Node node = excluded(not.clause());
+                if (node != null) {
+                    exclusions.add(node);
+                }
+                continue;
+            }
+            Node node = build(clause);
+            if (node == null) {
+                if (clause instanceof IndexQuery.Term && negations == 0) {
+                    continue;
+                }
+                return null;
+            }
+            if (root && clause instanceof IndexQuery.Term) {
+                proximityTerms.add((TermIterator) node.iterator());
+            }
+            clauses.add(node);
+        }
+        if (clauses.isEmpty()) {
+            return null;
+        }
+        Node included = clauses.size() == 1 ? clauses.get(0) : conjunction(clauses, ConjunctionIterator::new);
+        if (exclusions.isEmpty()) {
+            return included;
+        }
+        Node excluded = exclusions.size() == 1 ? exclusions.get(0) : disjunction(exclusions);
+        return new Node(new ExclusionIterator(included.iterator(), excluded.iterator()), included.cost());
+    }
+
+    private Node or(IndexQuery.Or or) {
+        List<Node> clauses = new ArrayList<>();
+        for (IndexQuery clause : or.clauses()) {
+            Node node = build(clause);
+            if (node != null) {
+                clauses.add(node);
+            }
+        }
+        if (clauses.isEmpty()) {
+            return null;
+        }
+        return clauses.size() == 1 ? clauses.get(0) : disjunction(clauses);
+    }
+
+    /**
+     * Строит исключаемое условие. Его леммы не участвуют в ранге.
+     */
+    private Node excluded(IndexQuery query) {
+        negations++;
+        try {
+            return build(query);
+        } finally {
+            negations--;
+        }
+    }
+
+    private static Node conjunction(List<Node> nodes,
+                                    Function<List<PageIterator>, PageIterator> factory) {
+        List<Node> sorted = nodes.stream().sorted(Comparator.comparingLong(Node::cost)).toList();
+        return new Node(factory.apply(sorted.stream().map(Node::iterator).toList()), sorted.get(0).cost());
+    }
+
+    private static Node disjunction(List<Node> nodes) {
+        return new Node(new DisjunctionIterator(nodes.stream().map(Node::iterator).toList()),
+                nodes.stream().mapToLong(Node::cost).sum());
+    }
+
+    /**
+     * У каждой леммы свой курсор, который только догоняет очередную страницу.
+     */
+    private double score(int pageId) {
+        double norm = k1 * (1 - b + b * pageLength.applyAsDouble(pageId) / averageLength);
+        double rank = 0;
+        for (Map.Entry<Integer, PostingCursor> lemma : scoringCursors.entrySet()) {
+            PostingCursor cursor = lemma.getValue();
+            if (cursor.advance(pageId) == pageId) {
+                double frequency = cursor.rank();
+                rank += idf.get(lemma.getKey()) * frequency * (k1 + 1) / (frequency + norm);
+            }
+        }
+        for (int i = 1; i < proximityTerms.size() && proximityWeight > 0; i++) {
+            TermIterator previous = proximityTerms.get(i - 1);
+            TermIterator current = proximityTerms.get(i);
+            if (previous.pageId() == pageId && current.pageId() == pageId) {
+                int distance = minDistance(previous.positions(), current.positions());
+                if (distance > 0) {
+                    rank += proximityWeight / ((double) distance * distance);
+                }
+            }
+        }
+        return rank;
+    }
+
+    private static boolean phraseMatches(List<TermIterator> terms, int[] offsets) {
+        int[][] positions = new int[terms.size()][];
+        for (int i = 0; i < terms.size(); i++) {
+            positions[i] = terms.get(i).positions();
+        }
+        for (int start : positions[0]) {
+            boolean found = true;
+            for (int i = 1; i < positions.length && found; i++) {
+                found = Arrays.binarySearch(positions[i], start + offsets[i] - offsets[0]) >= 0;
+            }
+            if (found) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return наименьшее ненулевое расстояние между позициями двух слов или 0, если его нет
+     */
+    private static int minDistance(int[] left, int[] right) {
+        int distance = Integer.MAX_VALUE;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            int difference = Math.abs(left[i] - right[j]);
+            if (difference > 0 && difference < distance) {
+                distance = difference;
+            }
+            if (left[i] < right[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return distance == Integer.MAX_VALUE ? 0 : distance;
+    }
+
+    private record Node(PageIterator iterator, long cost) {
+    }
+}
@@ -0,0 +1,266 @@
+package searchengine.service.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Неизменяемый файл индекса сайта, отображённый в память: заголовок, словарь лемм, длины страниц,
+ * таблица пропусков и сжатые блоки. Части читаются без копирования в кучу.
+ */
+final class Segment {
+    private static final int MAGIC = 0x59534547;
+    private static final int FORMAT_VERSION = 3;
+    private static final int HEADER_BYTES = 40;
+    private final Path file;
+    private final int lemmaCount;
+    private final int pageCount;
+    private final double totalLength;
+    private final IntBuffer dictionary;
+    private final IntBuffer normPages;
+    private final FloatBuffer normLengths;
+    private final IntBuffer skips;
+    private final ByteBuffer data;
+
+    private Segment(Path file, ByteBuffer buffer, int lemmaCount, int pageCount, int blockCount, int dataBytes,
+                    double totalLength) {
+        this.file = file;
+        this.lemmaCount = lemmaCount;
+        this.pageCount = pageCount;
+        this.totalLength = totalLength;
+        int offset = HEADER_BYTES;
+        dictionary = buffer.slice(offset, lemmaCount * 4 * Integer.BYTES).asIntBuffer();
+        offset += lemmaCount * 4 * Integer.BYTES;
+        normPages = buffer.slice(offset, pageCount * Integer.BYTES).asIntBuffer();
+        offset += pageCount * Integer.BYTES;
+        normLengths = buffer.slice(offset, pageCount * Float.BYTES).asFloatBuffer();
+        offset += pageCount * Float.BYTES;
+        skips = buffer.slice(offset, blockCount * 3 * Integer.BYTES).asIntBuffer();
+        offset += blockCount * 3 * Integer.BYTES;
+        data = buffer.slice(offset, dataBytes);
+    }
+
+    /**
+     * Отображает файл в память только для чтения.
+     *
+     * @throws IOException если файл не читается или не является индексом этого сайта
+     */
+    static Segment open(Path file, int siteId) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Invalid segment size: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || buffer.getInt(8) != siteId) {
+            throw new IOException("Invalid segment header: " + file);
+        }
+        int lemmaCount = buffer.getInt(12);
+        int pageCount = buffer.getInt(16);
+        int blockCount = buffer.getInt(20);
+        int dataBytes = buffer.getInt(24);
+        if (lemmaCount < 0 || pageCount < 0 || blockCount < 0 || dataBytes < 0
+                || size(lemmaCount, pageCount, blockCount, dataBytes) != buffer.capacity()) {
+            throw new IOException("Invalid segment size: " + file);
+        }
+        return new Segment(file, buffer, lemmaCount, pageCount, blockCount, dataBytes, buffer.getDouble(32));
+    }
+
+    /**
+     * Записывает индекс во временный файл и атомарно переименовывает его в {@code file},
+     * так что читатели никогда не видят недописанный файл. Сжатые блоки списков
+     * копируются в файл как есть.
+     */
+    static void write(Path file, int siteId, Map<Integer, Postings> postings, Map<Integer, Float> pageLengths,
+                      double totalLength) throws IOException {
+        Map<Integer, Float> sortedLengths = new TreeMap<>(pageLengths);
+        Map<Integer, List<Block>> sortedBlocks = new TreeMap<>();
+        long blockCount = 0;
+        long dataBytes = 0;
+        for (Map.Entry<Integer, Postings> entry : postings.entrySet()) {
+            List<Block> blocks = new ArrayList<>();
+            entry.getValue().forEachBlock((firstPage, count, blockData) ->
+                    blocks.add(new Block(firstPage, count, blockData)));
+            sortedBlocks.put(entry.getKey(), blocks);
+            blockCount += blocks.size();
+            for (Block block : blocks) {
+                dataBytes += block.data().length;
+            }
+        }
+        long size = size(sortedBlocks.size(), sortedLengths.size(), blockCount, dataBytes);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Segment is too large: " + size + " bytes");
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(siteId)
+                    .putInt(sortedBlocks.size()).putInt(sortedLengths.size())
+                    .putInt((int) blockCount).putInt((int) dataBytes).putInt(0)
+                    .putDouble(totalLength);
+            int firstBlock = 0;
+            for (Map.Entry<Integer, List<Block>> entry : sortedBlocks.entrySet()) {
+                buffer.putInt(entry.getKey()).putInt(postings.get(entry.getKey()).size())
+                        .putInt(firstBlock).putInt(entry.getValue().size());
+                firstBlock += entry.getValue().size();
+            }
+            sortedLengths.keySet().forEach(buffer::putInt);
+            sortedLengths.values().forEach(buffer::putFloat);
+            int dataOffset = 0;
+            for (List<Block> blocks : sortedBlocks.values()) {
+                for (Block block : blocks) {
+                    buffer.putInt(block.firstPage()).putInt(block.count()).putInt(dataOffset);
+                    dataOffset += block.data().length;
+                }
+            }
+            for (List<Block> blocks : sortedBlocks.values()) {
+                for (Block block : blocks) {
+                    buffer.put(block.data());
+                }
+            }
+            buffer.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long size(long lemmaCount, long pageCount, long blockCount, long dataBytes) {
+        return HEADER_BYTES + lemmaCount * 4 * Integer.BYTES + pageCount * (Integer.BYTES + Float.BYTES)
+                + blockCount * 3 * Integer.BYTES + dataBytes;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int lemmaCount() {
+        return lemmaCount;
+    }
+
+    int pageCount() {
+        return pageCount;
+    }
+
+    double totalLength() {
+        return totalLength;
+    }
+
+    /**
+     * @return список страниц леммы или null, если леммы на сайте нет
+     */
+    PostingList postings(int lemmaId) {
+        int low = 0;
+        int high = lemmaCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = dictionary.get(middle * 4);
+            if (middleId < lemmaId) {
+                low = middle + 1;
+            } else if (middleId > lemmaId) {
+                high = middle - 1;
+            } else {
+                return new SegmentPostings(dictionary.get(middle * 4 + 1), dictionary.get(middle * 4 + 2),
+                        dictionary.get(middle * 4 + 3));
+            }
+        }
+        return null;
+    }
+
+    float pageLength(int pageId) {
+        int low = 0;
+        int high = pageCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = normPages.get(middle);
+            if (middleId < pageId) {
+                low = middle + 1;
+            } else if (middleId > pageId) {
+                high = middle - 1;
+            } else {
+                return normLengths.get(middle);
+            }
+        }
+        return 0;
+    }
+
+    void forEachLemma(IntConsumer consumer) {
+        for (int lemma = 0; lemma < lemmaCount; lemma++) {
+            consumer.accept(dictionary.get(lemma * 4));
+        }
+    }
+
+    void forEachPage(BiConsumer<Integer, Float> consumer) {
+        for (int i = 0; i < pageCount; i++) {
+            consumer.accept(normPages.get(i), normLengths.get(i));
+        }
+    }
+
+    private record Block(int firstPage, int count, byte[] data) {
+    }
+
+    /**
+     * Блоки одной леммы: окно [firstBlock, firstBlock + blocks) в таблице пропусков.
+     */
+    private class SegmentPostings implements PostingList {
+        private final int size;
+        private final int firstBlock;
+        private final int blocks;
+
+        SegmentPostings(int size, int firstBlock, int blocks) {
+            this.size = size;
+            this.firstBlock = firstBlock;
+            this.blocks = blocks;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public PostingCursor cursor() {
+            return new BlockCursor() {
+                @Override
+                protected int blocks() {
+                    return blocks;
+                }
+
+                @Override
+                protected int firstPage(int block) {
+                    return skips.get((firstBlock + block) * 3);
+                }
+
+                @Override
+                protected int decode(int block, int[] pages, float[] ranks, int[] positionOffsets,
+                                     int[] positionLengths) {
+                    int skip = (firstBlock + block) * 3;
+                    int count = skips.get(skip + 1);
+                    PostingCodec.decode(data, skips.get(skip + 2), skips.get(skip), count, pages, ranks,
+                            positionOffsets, positionLengths);
+                    return count;
+                }
+
+                @Override
+                protected int[] positions(int block, int entry, int offset, int length) {
+                    return Positions.decode(data, offset, length);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package searchengine.service.index;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс одного сайта: списки страниц по леммам с позициями и длины страниц для BM25.
+ * Поверх отображённого в память {@link Segment} в куче копятся изменения до следующей записи файла.
+ */
+@Slf4j
+class SiteIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Postings> postings = new HashMap<>();
+    private final Map<Integer, Float> pageLengths = new HashMap<>();
+    private final Set<Integer> hiddenPages = new HashSet<>();
+    private final Map<Integer, Integer> hiddenPostings = new HashMap<>();
+    private double totalLength;
+    private int hiddenPageCount;
+    private double hiddenLength;
+    private Segment segment;
+    private boolean segmentStale;
+    private long modifications;
+
+    SiteIndex() {
+    }
+
+    SiteIndex(Segment segment) {
+        this.segment = segment;
+    }
+
+    /**
+     * Добавляет строку индекса при загрузке из базы, когда файла индекса нет.
+     *
+     * @param positions позиции леммы на странице, сжатые {@link Positions}
+     */
+    void add(int pageId, int lemmaId, float rank, byte[] positions) {
+        lock.writeLock().lock();
+        try {
+            if (segment != null) {
+                throw new IllegalStateException("Index of the site is already loaded from a segment");
+            }
+            modified();
+            postings.computeIfAbsent(lemmaId, key -> new Postings()).add(pageId, rank, positions);
+            pageLengths.merge(pageId, rank, Float::sum);
+            totalLength += rank;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param lemmas позиции лемм на странице по id леммы; ранг леммы — число её позиций
+     */
+    void addPage(int pageId, Map<Integer, int[]> lemmas) {
+        lock.writeLock().lock();
+        try {
+            modified();
+            put(pageId, lemmas);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param lemmaIds леммы страницы; списки остальных лемм не просматриваются
+     */
+    void removePage(int pageId, Collection<Integer> lemmaIds) {
+        lock.writeLock().lock();
+        try {
+            modified();
+            remove(pageId, lemmaIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Заменяет леммы страницы под одной блокировкой, чтобы поиск не увидел страницу без лемм.
+     */
+    void replacePage(int pageId, Collection<Integer> oldLemmaIds, Map<Integer, int[]> lemmas) {
+        lock.writeLock().lock();
+        try {
+            modified();
+            remove(pageId, oldLemmaIds);
+            put(pageId, lemmas);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Записывает индекс вместе с накопленными изменениями в файл под блокировкой чтения,
+     * не останавливая поиск, и переключает чтение на этот файл, если за время записи индекс не менялся.
+     */
+    void writeSegment(Path file, int siteId) throws IOException {
+        long written;
+        lock.readLock().lock();
+        try {
+            if (segment != null && !segmentStale) {
+                return;
+            }
+            if (segment == null) {
+                Segment.write(file, siteId, postings, pageLengths, totalLength);
+            } else {
+                Segment.write(file, siteId, mergedPostings(), mergedPageLengths(), totalLength());
+            }
+            written = modifications;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Segment opened = Segment.open(file, siteId);
+        lock.writeLock().lock();
+        try {
+            if (written == modifications) {
+                segment = opened;
+                segmentStale = false;
+                postings.clear();
+                pageLengths.clear();
+                hiddenPages.clear();
+                hiddenPostings.clear();
+                totalLength = 0;
+                hiddenPageCount = 0;
+                hiddenLength = 0;
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        deleteFile(file);
+    }
+
+    void deleteSegment() {
+        lock.writeLock().lock();
+        try {
+            if (segment != null) {
+                deleteFile(segment.file());
+                segment = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Файл индекса перестаёт соответствовать базе при первом изменении, поэтому удаляется,
+     * а отображённая память остаётся доступной до записи нового файла.
+     */
+    private void modified() {
+        modifications++;
+        if (segment != null && !segmentStale) {
+            deleteFile(segment.file());
+            segmentStale = true;
+        }
+    }
+
+    private static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.error("Failed to delete index segment " + file, e);
+        }
+    }
+
+    private void put(int pageId, Map<Integer, int[]> lemmas) {
+        float length = 0;
+        for (Map.Entry<Integer, int[]> lemma : lemmas.entrySet()) {
+            int rank = lemma.getValue().length;
+            postings.computeIfAbsent(lemma.getKey(), key -> new Postings())
+                    .add(pageId, rank, Positions.encode(lemma.getValue()));
+            length += rank;
+        }
+        if (length > 0) {
+            Float previous = pageLengths.put(pageId, length);
+            totalLength += length - (previous == null ? 0 : previous);
+        }
+    }
+
+    private void remove(int pageId, Collection<Integer> lemmaIds) {
+        hide(pageId, lemmaIds);
+        Float length = pageLengths.remove(pageId);
+        if (length != null) {
+            totalLength -= length;
+        }
+        for (Integer lemmaId : lemmaIds) {
+            Postings lemmaPostings = postings.get(lemmaId);
+            if (lemmaPostings != null && lemmaPostings.remove(pageId) && lemmaPostings.size() == 0) {
+                postings.remove(lemmaId);
+            }
+        }
+    }
+
+    /**
+     * Скрывает страницу в файле индекса, не меняя его.
+     */
+    private void hide(int pageId, Collection<Integer> lemmaIds) {
+        if (segment == null || !hiddenPages.add(pageId)) {
+            return;
+        }
+        float length = segment.pageLength(pageId);
+        if (length > 0) {
+            hiddenPageCount++;
+            hiddenLength += length;
+        }
+        for (Integer lemmaId : lemmaIds) {
+            PostingList list = segment.postings(lemmaId);
+            if (list != null && list.cursor().advance(pageId) == pageId) {
+                hiddenPostings.merge(lemmaId, 1, Integer::sum);
+            }
+        }
+    }
+
+    private Map<Integer, Postings> mergedPostings() {
+        Set<Integer> lemmaIds = new HashSet<>(postings.keySet());
+        segment.forEachLemma(lemmaIds::add);
+        Map<Integer, Postings> merged = new HashMap<>();
+        for (Integer lemmaId : lemmaIds) {
+            PostingList list = postings(lemmaId);
+            if (list == null) {
+                continue;
+            }
+            Postings lemmaPostings = new Postings();
+            PostingCursor cursor = list.cursor();
+            while (cursor.next() != PostingCursor.NO_MORE_PAGES) {
+                lemmaPostings.add(cursor.pageId(), cursor.rank(), Positions.encode(cursor.positions()));
+            }
+            merged.put(lemmaId, lemmaPostings);
+        }
+        return merged;
+    }
+
+    private Map<Integer, Float> mergedPageLengths() {
+        Map<Integer, Float> merged = new HashMap<>();
+        segment.forEachPage((pageId, length) -> {
+            if (!hiddenPages.contains(pageId)) {
+                merged.put(pageId, length);
+            }
+        });
+        merged.putAll(pageLengths);
+        return merged;
+    }
+
+    /**
+     * Находит страницы запроса и считает их ранг, см. {@link QueryExecutor}.
+     */
+    Map<Integer, Double> search(IndexQuery query, double k1, double b, double proximityWeight) {
+        lock.readLock().lock();
+        try {
+            return new QueryExecutor(this::postings, this::pageLength, pageCount(), totalLength(), k1, b,
+                    proximityWeight)
+                    .execute(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return позиции лемм на странице по id леммы; леммы, которых нет на странице, пропускаются
+     */
+    Map<Integer, int[]> positions(int pageId, Collection<Integer> lemmaIds) {
+        lock.readLock().lock();
+        try {
+            Map<Integer, int[]> positions = new HashMap<>();
+            for (Integer lemmaId : lemmaIds) {
+                PostingList list = postings(lemmaId);
+                if (list == null) {
+                    continue;
+                }
+                PostingCursor cursor = list.cursor();
+                if (cursor.advance(pageId) == pageId) {
+                    positions.put(lemmaId, cursor.positions());
+                }
+            }
+            return positions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int lemmasCount() {
+        lock.readLock().lock();
+        try {
+            if (segment == null) {
+                return postings.size();
+            }
+            int count = segment.lemmaCount();
+            for (Integer lemmaId : postings.keySet()) {
+                if (segment.postings(lemmaId) == null) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private PostingList postings(int lemmaId) {
+        Postings delta = postings.get(lemmaId);
+        PostingList stored = segment == null ? null : segment.postings(lemmaId);
+        if (stored == null) {
+            return delta;
+        }
+        if (delta == null && hiddenPages.isEmpty()) {
+            return stored;
+        }
+        int size = stored.size() - hiddenPostings.getOrDefault(lemmaId, 0) + (delta == null ? 0 : delta.size());
+        return size == 0 ? null : new MergedPostings(stored, delta, hiddenPages, size);
+    }
+
+    private float pageLength(int pageId) {
+        Float length = pageLengths.get(pageId);
+        if (length != null) {
+            return length;
+        }
+        return segment == null || hiddenPages.contains(pageId) ? 0 : segment.pageLength(pageId);
+    }
+
+    private int pageCount() {
+        return segment == null ? pageLengths.size() : segment.pageCount() - hiddenPageCount + pageLengths.size();
+    }
+
+    private double totalLength() {
+        return segment == null ? totalLength : segment.totalLength() - hiddenLength + totalLength;
+    }
+}
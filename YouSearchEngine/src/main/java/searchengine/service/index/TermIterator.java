@@ -0,0 +1,47 @@
+package searchengine.service.index;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Страницы, на которых есть все леммы слова запроса. Позиции слова — позиции,
+ * общие для всех его лемм: у омонимов они совпадают, так как леммы взяты из одного слова.
+ */
+class TermIterator extends ConjunctionIterator {
+    private final List<PostingCursor> cursors;
+
+    /**
+     * @param cursors курсоры лемм слова в порядке возрастания длины списков
+     */
+    TermIterator(List<PostingCursor> cursors) {
+        super(cursors);
+        this.cursors = cursors;
+    }
+
+    int[] positions() {
+        int[] positions = cursors.get(0).positions();
+        for (int i = 1; i < cursors.size() && positions.length > 0; i++) {
+            positions = intersect(positions, cursors.get(i).positions());
+        }
+        return positions;
+    }
+
+    private static int[] intersect(int[] left, int[] right) {
+        int[] common = new int[Math.min(left.length, right.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                common[count++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, count);
+    }
+}
@@ -0,0 +1,90 @@
+package searchengine.service.indexing;
+
+/**
+ * Множество long с открытой адресацией, разбитое на полосы; 0 хранится как 1.
+ */
+class ConcurrentLongSet {
+    private static final int STRIPES = 64;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.6f;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    ConcurrentLongSet() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    boolean add(long value) {
+        long key = value == 0 ? 1 : value;
+        return stripes[(int) (key >>> 58)].add(key);
+    }
+
+    boolean contains(long value) {
+        long key = value == 0 ? 1 : value;
+        return stripes[(int) (key >>> 58)].contains(key);
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private static class Stripe {
+        private long[] table = new long[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized boolean add(long key) {
+            if (size + 1 > table.length * LOAD_FACTOR) {
+                resize();
+            }
+            if (!insert(table, key)) {
+                return false;
+            }
+            size++;
+            return true;
+        }
+
+        synchronized boolean contains(long key) {
+            int mask = table.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == key) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void resize() {
+            long[] resized = new long[table.length * 2];
+            for (long key : table) {
+                if (key != 0) {
+                    insert(resized, key);
+                }
+            }
+            table = resized;
+        }
+
+        private static boolean insert(long[] table, long key) {
+            int mask = table.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = key;
+            return true;
+        }
+    }
+}
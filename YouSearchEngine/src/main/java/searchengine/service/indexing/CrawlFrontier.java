@@ -0,0 +1,133 @@
+package searchengine.service.indexing;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Очередь путей обхода сайта: в памяти не больше {@code capacity} путей, остальные во временном файле.
+ */
+class CrawlFrontier implements Closeable {
+    private final BlockingQueue<String> queue;
+    private final VisitedPaths visited;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object spillLock = new Object();
+    private Path spillFile;
+    private BufferedWriter spillWriter;
+    private BufferedReader spillReader;
+    private long spilled;
+
+    CrawlFrontier(int capacity, VisitedPaths visited) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.visited = visited;
+    }
+
+    void markVisited(String path) {
+        visited.claim(path);
+    }
+
+    boolean isVisited(String path) {
+        return visited.contains(path);
+    }
+
+    /**
+     * Не блокируется: путь, которому нет места в очереди, сразу уходит в файл.
+     */
+    boolean push(String path) {
+        if (!visited.claim(path)) {
+            return false;
+        }
+        pending.incrementAndGet();
+        if (!queue.offer(path)) {
+            synchronized (spillLock) {
+                spill(path);
+            }
+        }
+        return true;
+    }
+
+    String poll(long timeout) throws InterruptedException {
+        synchronized (spillLock) {
+            while (spilled > 0 && queue.remainingCapacity() > 0) {
+                queue.add(unspill());
+            }
+        }
+        return queue.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Отмечает путь обработанным.
+     *
+     * @return true, если это был последний необработанный путь
+     */
+    boolean complete() {
+        return pending.decrementAndGet() == 0;
+    }
+
+    boolean isDone() {
+        return pending.get() == 0;
+    }
+
+    @Override
+    public void close() {
+        synchronized (spillLock) {
+            deleteSpillFile();
+        }
+    }
+
+    private void spill(String path) {
+        try {
+            if (spillFile == null) {
+                spillFile = Files.createTempFile("crawl-frontier-", ".txt");
+                spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8);
+                spillReader = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8);
+            }
+            spillWriter.write(path);
+            spillWriter.newLine();
+            spilled++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write crawl frontier to " + spillFile, e);
+        }
+    }
+
+    /**
+     * Когда файл прочитан целиком, он удаляется, чтобы не расти весь обход.
+     */
+    private String unspill() {
+        try {
+            spillWriter.flush();
+            String path = spillReader.readLine();
+            if (--spilled == 0) {
+                deleteSpillFile();
+            }
+            return path;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read crawl frontier from " + spillFile, e);
+        }
+    }
+
+    private void deleteSpillFile() {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            spillWriter.close();
+            spillReader.close();
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete crawl frontier file " + spillFile, e);
+        } finally {
+            spillFile = null;
+            spilled = 0;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package searchengine.service.indexing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.model.SiteEntity;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.service.content.PageContentStore;
+import searchengine.service.index.InvertedIndex;
+import searchengine.service.lemma.IndexBulkWriter;
+import searchengine.service.lemma.LemmaDictionary;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Поколения индекса сайта: переиндексация пишет в теневое поколение, а поиск идёт
+ * по поколению с флагом serving до его переключения.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IndexGenerations {
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final PageContentStore contentStore;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final InvertedIndex invertedIndex;
+    private final IndexBulkWriter indexBulkWriter;
+    private final LemmaDictionary lemmaDictionary;
+    private final ExecutorService collector = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "generation-collector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Теневые поколения, обход которых прервал перезапуск приложения, уже не будут достроены.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void collectAbandoned() {
+        siteRepository.findAllByServingFalse().forEach(this::collect);
+    }
+
+    @PreDestroy
+    public void stop() {
+        collector.shutdown();
+    }
+
+    public void publish(Integer siteId) {
+        SiteEntity site = siteRepository.findById(siteId)
+                .orElseThrow(() -> new IllegalStateException("Site not found"));
+        invertedIndex.writeSegment(siteId);
+        siteRepository.updateServing(site.getUrl(), siteId);
+        log.info("Serving generation of site {} is {}", site.getUrl(), siteId);
+        siteRepository.findAllByUrlIgnoreCase(site.getUrl()).stream()
+                .filter(generation -> !generation.getId().equals(siteId))
+                .forEach(this::collect);
+    }
+
+    public void collect(SiteEntity site) {
+        collector.execute(() -> {
+            try {
+                delete(site);
+            } catch (RuntimeException e) {
+                log.error("Failed to delete generation " + site.getId() + " of site " + site.getUrl(), e);
+            }
+        });
+    }
+
+    private void delete(SiteEntity site) {
+        log.info("Delete site {}", site);
+        Integer siteId = site.getId();
+        indexBulkWriter.removeSite(siteId);
+        indexBulkWriter.flush();
+        invertedIndex.removeSite(siteId);
+        lemmaDictionary.removeSite(siteId);
+        indexRepository.deleteAllBySiteId(siteId);
+        lemmaRepository.deleteAllBySiteId(siteId);
+        contentStore.deleteAllBySiteId(siteId);
+        pageRepository.deleteAllBySiteId(siteId);
+        siteRepository.deleteById(siteId);
+    }
+}
@@ -7,7 +7,15 @@ public interface IndexingService {
 
     IndexingResponse startIndexing();
 
+    IndexingResponse startIndexing(String siteUrl);
+
+    IndexingResponse refreshIndexing();
+
+    IndexingResponse refreshIndexing(String siteUrl);
+
     IndexingResponse stopIndexing();
 
+    IndexingResponse stopIndexing(String siteUrl);
+
     IndexingResponse indexPage(IndexingRequest indexingRequest);
 }
@@ -3,6 +3,8 @@ package searchengine.service.indexing;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.dto.indexing.IndexingRequest;
 import searchengine.dto.indexing.IndexingResponse;
@@ -11,29 +13,37 @@ import searchengine.exceptions.NotFoundException;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 import searchengine.model.SiteStatus;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.service.content.PageContentStore;
 import searchengine.service.lemma.LemmaService;
 import searchengine.util.HtmlParser;
+import searchengine.util.PageFetcher;
 
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class IndexingServiceImpl implements IndexingService {
     private final PageRepository pageRepository;
+    private final PageContentStore contentStore;
     private final SiteRepository siteRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
     private final SitesList sitesList;
     private final LemmaService lemmaService;
     private final HtmlParser htmlParser;
+    private final PageFetcher pageFetcher;
+    private final IndexGenerations generations;
+    private final CrawlerSettings crawlerSettings;
+    private final Map<String, SiteCrawler> crawlers = new ConcurrentHashMap<>();
 
 
     @Override
@@ -44,32 +54,104 @@ public class IndexingServiceImpl implements IndexingService {
             throw new BadRequestException("Индексация уже запущена");
         }
 
-        deleteSites();
-
-        for (searchengine.config.Site site : sitesList.getSites()) {
-            String url = site.getUrl();
-            log.info("Save site with url: {}", url);
-            siteRepository.save(SiteEntity.builder()
-                    .name(site.getName())
-                    .status(SiteStatus.INDEXING)
-                    .url(url.toLowerCase())
-                    .statusTime(LocalDateTime.now())
-                    .build());
+        collectRemovedSites();
+
+        for (Site site : sitesList.getSites()) {
+            startSite(site);
         }
+        return new IndexingResponse();
+    }
 
-        for (SiteEntity site : siteRepository.findAll()) {
-            log.info("Start indexing site: {}", site);
-            runParser(site.getId(), "/");
+    @Override
+    public IndexingResponse startIndexing(String siteUrl) {
+        log.info("Start indexing site with url: {}", siteUrl);
+        Site site = getConfigSite(siteUrl.trim())
+                .orElseThrow(() -> new NotFoundException("Сайт не указан в конфигурационном файле"));
+
+        if (isIndexing(site.getUrl())) {
+            log.warn("Indexing of site already start");
+            throw new BadRequestException("Индексация сайта уже запущена");
         }
+
+        startSite(site);
         return new IndexingResponse();
     }
 
-    private void deleteSites() {
-        log.info("Delete all sites");
-        indexRepository.deleteAllInBatch();
-        lemmaRepository.deleteAllInBatch();
-        pageRepository.deleteAllInBatch();
-        siteRepository.deleteAllInBatch();
+    @Override
+    public IndexingResponse refreshIndexing() {
+        log.info("Refresh indexing");
+        if (existsIndexingSite()) {
+            log.warn("Indexing already start");
+            throw new BadRequestException("Индексация уже запущена");
+        }
+
+        for (Site site : sitesList.getSites()) {
+            refreshSite(site);
+        }
+        return new IndexingResponse();
+    }
+
+    @Override
+    public IndexingResponse refreshIndexing(String siteUrl) {
+        log.info("Refresh indexing site with url: {}", siteUrl);
+        Site site = getConfigSite(siteUrl.trim())
+                .orElseThrow(() -> new NotFoundException("Сайт не указан в конфигурационном файле"));
+
+        if (isIndexing(site.getUrl())) {
+            log.warn("Indexing of site already start");
+            throw new BadRequestException("Индексация сайта уже запущена");
+        }
+
+        refreshSite(site);
+        return new IndexingResponse();
+    }
+
+    /**
+     * Начинает новое теневое поколение сайта. Текущее поколение продолжает обслуживать поиск,
+     * пока новое не будет опубликовано по завершении обхода.
+     */
+    private void startSite(Site site) {
+        String url = site.getUrl();
+        siteRepository.findAllByUrlIgnoreCase(url).stream()
+                .filter(generation -> !generation.isServing())
+                .forEach(generations::collect);
+        log.info("Save site with url: {}", url);
+        SiteEntity persistSite = siteRepository.save(SiteEntity.builder()
+                .name(site.getName())
+                .status(SiteStatus.INDEXING)
+                .url(url.toLowerCase())
+                .serving(false)
+                .statusTime(LocalDateTime.now())
+                .build());
+        log.info("Start indexing site: {}", persistSite);
+        runParser(persistSite, "/", false);
+    }
+
+    /**
+     * Обновляет сайт без удаления данных. Сайт остаётся в статусе INDEXED и доступен для поиска,
+     * пока идёт обновление. Сайт, у которого нет проиндексированного поколения, индексируется полностью.
+     */
+    private void refreshSite(Site site) {
+        Optional<SiteEntity> optional = siteRepository.findByUrlIgnoreCaseAndServingTrue(site.getUrl());
+        if (optional.isEmpty() || !optional.get().getStatus().equals(SiteStatus.INDEXED)) {
+            startSite(site);
+            return;
+        }
+
+        SiteEntity persistSite = optional.get();
+        persistSite.setStatusTime(LocalDateTime.now());
+        siteRepository.save(persistSite);
+        log.info("Start refresh of site: {}", persistSite);
+        runParser(persistSite, "/", true);
+    }
+
+    private void collectRemovedSites() {
+        Set<String> urls = sitesList.getSites().stream()
+                .map(site -> site.getUrl().toLowerCase())
+                .collect(Collectors.toSet());
+        siteRepository.findAll().stream()
+                .filter(site -> !urls.contains(site.getUrl().toLowerCase()))
+                .forEach(generations::collect);
     }
 
     @Override
@@ -80,15 +162,42 @@ public class IndexingServiceImpl implements IndexingService {
             throw new BadRequestException("Индексация не запущена");
         }
 
-        siteRepository.findAllByStatus(SiteStatus.INDEXING).forEach(site -> {
-            site.setLastError("Индексация остановлена пользователем");
-            site.setStatus(SiteStatus.FAILED);
-            siteRepository.save(site);
-        });
+        crawlers.values().forEach(SiteCrawler::stop);
+        siteRepository.findAllByStatus(SiteStatus.INDEXING).stream()
+                .filter(site -> !site.isServing())
+                .forEach(this::markStopped);
 
         return new IndexingResponse();
     }
 
+    @Override
+    public IndexingResponse stopIndexing(String siteUrl) {
+        log.info("Stop indexing site with url: {}", siteUrl);
+        List<SiteEntity> sites = siteRepository.findAllByUrlIgnoreCase(siteUrl.trim());
+        if (sites.isEmpty()) {
+            throw new NotFoundException("Сайт не найден");
+        }
+        if (!isIndexing(siteUrl.trim())) {
+            log.warn("Indexing of site not run");
+            throw new BadRequestException("Индексация сайта не запущена");
+        }
+
+        crawlers.get(siteUrl.trim().toLowerCase()).stop();
+        sites.stream()
+                .filter(site -> !site.isServing() && site.getStatus().equals(SiteStatus.INDEXING))
+                .forEach(this::markStopped);
+        return new IndexingResponse();
+    }
+
+    /**
+     * Помечается только теневое поколение: обслуживающее поиск остаётся INDEXED.
+     */
+    private void markStopped(SiteEntity site) {
+        site.setLastError("Индексация остановлена пользователем");
+        site.setStatus(SiteStatus.FAILED);
+        siteRepository.save(site);
+    }
+
     @Override
     public IndexingResponse indexPage(IndexingRequest indexingRequest) {
         String requestUrl = indexingRequest.url();
@@ -106,7 +215,7 @@ public class IndexingServiceImpl implements IndexingService {
         path = path.trim();
         path = path.isBlank() ? "/" : path;
 
-        Optional<SiteEntity> optional = siteRepository.findByUrlIgnoreCase(siteUrl);
+        Optional<SiteEntity> optional = siteRepository.findByUrlIgnoreCaseAndServingTrue(siteUrl);
 
         if (optional.isPresent()) {
             SiteEntity site = optional.get();
@@ -114,9 +223,12 @@ public class IndexingServiceImpl implements IndexingService {
                 log.warn("Site in not INDEXED status");
                 throw new BadRequestException("Сайт не прошёл индексацию");
             }
-            indexing(site.getId());
+            if (isIndexing(site.getUrl())) {
+                log.warn("Refresh of site is running");
+                throw new BadRequestException("Индексация сайта уже запущена");
+            }
             deletePage(site, path);
-            runParser(site.getId(), path);
+            runParser(site, path, false);
             return new IndexingResponse();
         } else {
             log.warn("Site not found: {}", siteUrl);
@@ -125,28 +237,44 @@ public class IndexingServiceImpl implements IndexingService {
         }
     }
 
-    private void runParser(Integer siteId, String path) {
-        new UrlParser(siteId, path,
-                siteRepository, pageRepository,
+    private void runParser(SiteEntity site, String path, boolean incremental) {
+        Optional<Site> configSite = getConfigSite(site.getUrl());
+        int parallelism = Math.max(1, configSite.map(Site::getParallelism).orElse(crawlerSettings.getWorkers()));
+        int priority = Math.max(Thread.MIN_PRIORITY, Math.min(Thread.MAX_PRIORITY,
+                configSite.map(Site::getPriority).orElse(Thread.NORM_PRIORITY)));
+        SiteCrawler crawler = new SiteCrawler(site.getId(), parallelism, priority, incremental,
+                siteRepository, pageRepository, contentStore,
                 lemmaService,
                 htmlParser,
-                true).fork();
+                pageFetcher,
+                generations,
+                crawlerSettings);
+        crawlers.put(site.getUrl().toLowerCase(), crawler);
+        crawler.start(path);
+    }
+
+    private Optional<Site> getConfigSite(String url) {
+        return sitesList.getSites().stream()
+                .filter(site -> site.getUrl().equalsIgnoreCase(url))
+                .findFirst();
     }
 
     private void deletePage(SiteEntity site, String path) {
         log.info("Delete page {} for site {}", path, site);
         Optional<PageEntity> optional = pageRepository.findBySiteAndPath(site, path);
-        optional.ifPresent(pageRepository::delete);
+        optional.ifPresent(page -> {
+            lemmaService.deletePage(page);
+            contentStore.delete(page.getId());
+            pageRepository.delete(page);
+        });
     }
 
-    private void indexing(Integer siteId) {
-        SiteEntity site = siteRepository.findById(siteId).orElseThrow(() -> new IllegalStateException("Site not found"));
-        site.setStatus(SiteStatus.INDEXING);
-        siteRepository.save(site);
-        log.info("Site indexing: {}", site);
+    private boolean existsIndexingSite() {
+        return crawlers.values().stream().anyMatch(SiteCrawler::isRunning);
     }
 
-    private boolean existsIndexingSite() {
-        return siteRepository.existsByStatus(SiteStatus.INDEXING);
+    private boolean isIndexing(String url) {
+        SiteCrawler crawler = crawlers.get(url.toLowerCase());
+        return crawler != null && crawler.isRunning();
     }
 }
@@ -0,0 +1,336 @@
+package searchengine.service.indexing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.UnsupportedMimeTypeException;
+import searchengine.config.CrawlerSettings;
+import searchengine.dto.PageInfo;
+import searchengine.dto.index.PageVersion;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.model.SiteStatus;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.service.content.PageContentStore;
+import searchengine.service.lemma.LemmaService;
+import searchengine.util.HtmlParser;
+import searchengine.util.PageFetcher;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Обход одного сайта: диспетчер загружает пути из {@link CrawlFrontier}, а пул обходчиков
+ * сохраняет и индексирует страницы.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class SiteCrawler {
+    private static final long POLL_TIMEOUT = 100;
+    private final Integer siteId;
+    private final int parallelism;
+    private final int priority;
+    private final boolean incremental;
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final PageContentStore contentStore;
+    private final LemmaService lemmaService;
+    private final HtmlParser htmlParser;
+    private final PageFetcher pageFetcher;
+    private final IndexGenerations generations;
+    private final CrawlerSettings settings;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile boolean stopped;
+    private volatile boolean terminated;
+    private CrawlFrontier frontier;
+    private ExecutorService workers;
+    private Semaphore connections;
+    private Semaphore inFlight;
+    private int inFlightLimit;
+
+    public void start(String path) {
+        frontier = new CrawlFrontier(settings.getFrontierCapacity(), new VisitedPaths(settings.getVisitedSet()));
+        if (!incremental) {
+            pageRepository.findAllPathsBySiteId(siteId).forEach(frontier::markVisited);
+        }
+        connections = new Semaphore(settings.getMaxConnections());
+        inFlightLimit = Math.max(settings.getMaxInFlight(), settings.getMaxConnections());
+        inFlight = new Semaphore(inFlightLimit);
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "crawler-" + siteId + "-" + threadNumber.incrementAndGet());
+            thread.setPriority(priority);
+            return thread;
+        });
+        frontier.push(path);
+        Thread dispatcher = new Thread(this::dispatch, "crawler-" + siteId + "-dispatcher");
+        dispatcher.setPriority(priority);
+        dispatcher.start();
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Остановленный обход считается идущим, пока обходчики не закончили сохранять страницы.
+     */
+    public boolean isRunning() {
+        return !terminated;
+    }
+
+    private void dispatch() {
+        try {
+            while (!stopped && !frontier.isDone()) {
+                String path = frontier.poll(POLL_TIMEOUT);
+                if (path == null) {
+                    continue;
+                }
+                inFlight.acquire();
+                try {
+                    connections.acquire();
+                } catch (InterruptedException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                boolean started = false;
+                try {
+                    fetch(path);
+                    started = true;
+                } catch (RuntimeException e) {
+                    log.error("Dispatch exception", e);
+                    pageFailed(path);
+                } finally {
+                    if (!started) {
+                        connections.release();
+                        inFlight.release();
+                        complete();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted!", e);
+            failed("--> Ошибка парсинг: Interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.acquireUninterruptibly(inFlightLimit);
+            workers.shutdown();
+            awaitWorkers();
+            frontier.close();
+            terminated = true;
+        }
+    }
+
+    private void awaitWorkers() {
+        boolean interrupted = Thread.interrupted();
+        while (!workers.isTerminated()) {
+            try {
+                workers.awaitTermination(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Исключение бросается, только если загрузка не была запущена.
+     */
+    private void fetch(String path) {
+        URI uri = URI.create(getPersistSite().getUrl() + path);
+        PageVersion version = incremental
+                ? pageRepository.findVersionBySiteIdAndPath(siteId, path).orElse(null)
+                : null;
+        pageFetcher.fetch(uri, version)
+                .whenComplete((pageInfo, error) -> connections.release())
+                .whenCompleteAsync((pageInfo, error) -> {
+                    try {
+                        if (!stopped) {
+                            crawl(path, version, pageInfo, error);
+                        }
+                    } finally {
+                        inFlight.release();
+                        complete();
+                    }
+                }, workers);
+    }
+
+    private void crawl(String path, PageVersion version, PageInfo pageInfo, Throwable error) {
+        try {
+            if (error != null) {
+                throw error instanceof CompletionException ? error.getCause() : error;
+            }
+            updateStatusTime();
+            Set<String> paths = version == null ? indexPage(path, pageInfo) : refreshPage(version, pageInfo);
+
+            for (String pathFromPage : paths) {
+                frontier.push(pathFromPage);
+            }
+        } catch (UnsupportedMimeTypeException e) {
+            log.warn("UnsupportedMimeTypeException", e);
+        } catch (InterruptedException e) {
+            log.warn("Interrupted!", e);
+            failed("--> Ошибка парсинг: Interrupted");
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            log.error("Parser exception", e);
+            if (getPersistSite().isServing()) {
+                pageFailed(path);
+            } else {
+                failed("--> Ошибка парсинг URL: " + getPersistSite().getUrl() + path);
+            }
+        }
+    }
+
+    private void complete() {
+        if (frontier.complete()) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (!stopped && finished.compareAndSet(false, true)) {
+            if (incremental) {
+                deleteVanishedPages();
+            }
+            lemmaService.completeIndexing(siteId);
+            indexed();
+            generations.publish(siteId);
+        }
+    }
+
+    private Set<String> indexPage(String path, PageInfo pageInfo) {
+        PageEntity page = pageRepository.save(PageEntity.builder()
+                .path(path)
+                .site(getPersistSite())
+                .code(pageInfo.getStatusCode())
+                .title(pageInfo.getTitle())
+                .text(pageInfo.getText())
+                .contentHash(htmlParser.contentHash(pageInfo.getContent()))
+                .etag(pageInfo.getEtag())
+                .lastModified(pageInfo.getLastModified())
+                .build());
+        contentStore.save(page.getId(), pageInfo.getContent());
+
+        if (page.getCode() < 400) {
+            lemmaService.findAndSave(page);
+        }
+        return pageInfo.getPaths();
+    }
+
+    /**
+     * Обновляет уже сохранённую страницу и возвращает ссылки из её актуального содержимого.
+     * Если сервер ответил 304 или хэш содержимого не изменился, леммы не пересчитываются.
+     */
+    private Set<String> refreshPage(PageVersion version, PageInfo pageInfo) {
+        if (pageInfo.isNotModified()) {
+            return htmlParser.getPaths(contentStore.find(version.id()).orElse(""));
+        }
+
+        String contentHash = htmlParser.contentHash(pageInfo.getContent());
+        if (contentHash.equals(version.contentHash())) {
+            if (!Objects.equals(version.etag(), pageInfo.getEtag())
+                    || !Objects.equals(version.lastModified(), pageInfo.getLastModified())) {
+                PageEntity page = getPage(version);
+                page.setEtag(pageInfo.getEtag());
+                page.setLastModified(pageInfo.getLastModified());
+                pageRepository.save(page);
+            }
+            return pageInfo.getPaths();
+        }
+
+        PageEntity page = getPage(version);
+        page.setCode(pageInfo.getStatusCode());
+        page.setTitle(pageInfo.getTitle());
+        page.setText(pageInfo.getText());
+        page.setContentHash(contentHash);
+        page.setEtag(pageInfo.getEtag());
+        page.setLastModified(pageInfo.getLastModified());
+        contentStore.save(page.getId(), pageInfo.getContent());
+        lemmaService.reindexPage(pageRepository.save(page));
+        return pageInfo.getPaths();
+    }
+
+    private void deleteVanishedPages() {
+        SiteEntity persistSite = getPersistSite();
+        int deleted = 0;
+        for (String path : pageRepository.findAllPathsBySiteId(siteId)) {
+            if (frontier.isVisited(path)) {
+                continue;
+            }
+            Optional<PageEntity> optional = pageRepository.findBySiteAndPath(persistSite, path);
+            if (optional.isPresent()) {
+                lemmaService.deletePage(optional.get());
+                contentStore.delete(optional.get().getId());
+                pageRepository.delete(optional.get());
+                deleted++;
+            }
+        }
+        log.info("Delete vanished pages for site with id {}: {}", siteId, deleted);
+    }
+
+    private PageEntity getPage(PageVersion version) {
+        return pageRepository.findById(version.id())
+                .orElseThrow(() -> new IllegalStateException("Page not found"));
+    }
+
+    /**
+     * Ошибка одной страницы не останавливает обход, а только запоминается в сайте.
+     */
+    private void pageFailed(String path) {
+        String error = "--> Ошибка парсинг URL: " + path;
+        log.warn("Failed page of site with id {}: {}", siteId, error);
+        try {
+            SiteEntity persistSite = getPersistSite();
+            persistSite.setLastError(error);
+            siteRepository.save(persistSite);
+        } catch (RuntimeException e) {
+            log.error("Failed to save error of site with id " + siteId, e);
+        }
+    }
+
+    /**
+     * Останавливает обход. В статус FAILED переходит только теневое поколение:
+     * обслуживающее поиск остаётся INDEXED с прежним индексом.
+     */
+    private void failed(String error) {
+        stopped = true;
+        log.warn("Failed indexing site with id {}: {}", siteId, error);
+        SiteEntity persistSite = getPersistSite();
+        persistSite.setLastError(error);
+        if (!persistSite.isServing()) {
+            persistSite.setStatus(SiteStatus.FAILED);
+        }
+        siteRepository.save(persistSite);
+    }
+
+    private void updateStatusTime() {
+        SiteEntity persistSite = getPersistSite();
+        persistSite.setStatusTime(LocalDateTime.now());
+        siteRepository.save(persistSite);
+    }
+
+    private void indexed() {
+        SiteEntity persistSite = getPersistSite();
+        persistSite.setStatusTime(LocalDateTime.now());
+        persistSite.setStatus(SiteStatus.INDEXED);
+        siteRepository.save(persistSite);
+    }
+
+    private SiteEntity getPersistSite() {
+        return siteRepository.findById(siteId)
+                .orElseThrow(() -> new IllegalStateException("Site not found"));
+    }
+}
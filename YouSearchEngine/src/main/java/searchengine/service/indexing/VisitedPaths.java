@@ -0,0 +1,51 @@
+package searchengine.service.indexing;
+
+import searchengine.config.VisitedSetMode;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Пути сайта, уже занятые обходом; в режиме HASHED хранится только 64-битный хэш пути.
+ */
+class VisitedPaths {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private final Set<String> paths;
+    private final ConcurrentLongSet hashes;
+
+    VisitedPaths(VisitedSetMode mode) {
+        if (mode == VisitedSetMode.HASHED) {
+            paths = null;
+            hashes = new ConcurrentLongSet();
+        } else {
+            paths = ConcurrentHashMap.newKeySet();
+            hashes = null;
+        }
+    }
+
+    boolean claim(String path) {
+        return paths != null ? paths.add(path) : hashes.add(hash(path));
+    }
+
+    boolean contains(String path) {
+        return paths != null ? paths.contains(path) : hashes.contains(hash(path));
+    }
+
+    int size() {
+        return paths != null ? paths.size() : hashes.size();
+    }
+
+    private static long hash(String path) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < path.length(); i++) {
+            char symbol = path.charAt(i);
+            hash = (hash ^ (symbol & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (symbol >>> 8)) * FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,286 @@
+package searchengine.service.lemma;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.BulkWriterSettings;
+import searchengine.service.index.Positions;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакетная запись в таблицы lemma и index: строки index и приращения frequency копятся
+ * в буфере до {@link #flush()}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IndexBulkWriter {
+    private final JdbcTemplate jdbcTemplate;
+    private final BulkWriterSettings settings;
+    private final PlatformTransactionManager transactionManager;
+    private final Object flushLock = new Object();
+    private final Map<Integer, StripedCounters> frequencies = new ConcurrentHashMap<>();
+    private List<PendingIndex> buffer = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-bulk-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, settings.getFlushInterval(),
+                settings.getFlushInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+        flushQuietly();
+    }
+
+    /**
+     * @param positions позиции лемм на странице по id леммы; ранг леммы — число её позиций
+     */
+    public void add(Integer siteId, Integer pageId, Map<Integer, int[]> positions) {
+        boolean full;
+        synchronized (this) {
+            positions.forEach((lemmaId, lemmaPositions) -> buffer.add(new PendingIndex(siteId, pageId, lemmaId,
+                    (float) lemmaPositions.length, Positions.encode(lemmaPositions))));
+            full = buffer.size() >= settings.getBatchSize();
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    public void addFrequencies(Integer siteId, Collection<Integer> lemmaIds, int delta) {
+        StripedCounters siteFrequencies = frequencies.computeIfAbsent(siteId, id -> new StripedCounters());
+        lemmaIds.forEach(lemmaId -> siteFrequencies.add(lemmaId, delta));
+    }
+
+    /**
+     * Записывает буфер в одной транзакции. Если строки нарушают ограничения базы, пакет записывается
+     * по частям, а такие строки отбрасываются. При остальных ошибках буфер восстанавливается
+     * до следующей попытки, а исключение пробрасывается.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<PendingIndex> rows;
+            synchronized (this) {
+                rows = buffer;
+                buffer = new ArrayList<>();
+            }
+            Map<Integer, Map<Integer, Integer>> deltas = drainFrequencies();
+            if (rows.isEmpty() && deltas.isEmpty()) {
+                return;
+            }
+            long startTime = System.currentTimeMillis();
+            try {
+                try {
+                    inTransaction(() -> {
+                        for (List<PendingIndex> chunk : chunks(rows)) {
+                            insertIndices(chunk);
+                        }
+                        updateFrequencies(deltas);
+                    });
+                } catch (DataIntegrityViolationException e) {
+                    log.warn("Bulk write of {} index rows violates a constraint, writing them in parts: {}",
+                            rows.size(), e.getMessage());
+                    for (List<PendingIndex> chunk : chunks(rows)) {
+                        insertSkippingInvalid(chunk);
+                    }
+                    inTransaction(() -> updateFrequencies(deltas));
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    rows.addAll(buffer);
+                    buffer = rows;
+                }
+                deltas.forEach((siteId, siteDeltas) -> siteDeltas.forEach((lemmaId, delta) ->
+                        frequencies.computeIfAbsent(siteId, id -> new StripedCounters()).add(lemmaId, delta)));
+                throw e;
+            }
+            log.debug("Flushed {} index rows and lemma frequencies of {} sites in {} ms.", rows.size(),
+                    deltas.size(), System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Забывает ещё не записанные строки и приращения удаляемого сайта.
+     */
+    public void removeSite(Integer siteId) {
+        synchronized (flushLock) {
+            synchronized (this) {
+                buffer.removeIf(row -> row.siteId().equals(siteId));
+            }
+            frequencies.remove(siteId);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Bulk write of index rows failed, retry on the next flush", e);
+        }
+    }
+
+    public List<Integer> findLemmaIds(Integer pageId) {
+        flush();
+        return jdbcTemplate.queryForList("SELECT lemma_id FROM `index` WHERE page_id = ?", Integer.class, pageId);
+    }
+
+    public void deletePageIndices(Integer pageId) {
+        flush();
+        jdbcTemplate.update("DELETE FROM `index` WHERE page_id = ?", pageId);
+    }
+
+    /**
+     * @return id удалённых лемм; сами строки лемм могут отличаться от ключей словаря из-за collation
+     */
+    public List<Integer> deleteUnusedLemmas(Integer siteId) {
+        flush();
+        List<Integer> lemmaIds = jdbcTemplate.queryForList(
+                "SELECT id FROM lemma WHERE site_id = ? AND frequency <= 0", Integer.class, siteId);
+        for (List<Integer> chunk : chunks(lemmaIds)) {
+            List<Object> args = new ArrayList<>(chunk);
+            args.add(0, siteId);
+            jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ? AND frequency <= 0 AND id IN (" +
+                    String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")", args.toArray());
+        }
+        return lemmaIds;
+    }
+
+    public Map<String, Integer> createLemmas(Integer siteId, Collection<String> lemmas) {
+        Map<String, Integer> lemmaIds = new HashMap<>();
+        for (List<String> chunk : chunks(new ArrayList<>(lemmas))) {
+            upsertLemmas(siteId, chunk);
+            lemmaIds.putAll(selectLemmaIds(siteId, chunk));
+        }
+        return lemmaIds;
+    }
+
+    private void upsertLemmas(Integer siteId, List<String> lemmas) {
+        String sql = "INSERT INTO lemma (site_id, lemma, frequency) VALUES " + placeholders(lemmas.size(), 3) +
+                " ON DUPLICATE KEY UPDATE id = id";
+        Object[] args = new Object[lemmas.size() * 3];
+        for (int i = 0; i < lemmas.size(); i++) {
+            args[i * 3] = siteId;
+            args[i * 3 + 1] = lemmas.get(i);
+            args[i * 3 + 2] = 0;
+        }
+        jdbcTemplate.update(sql, args);
+    }
+
+    /**
+     * Сравнение строк в MySQL зависит от collation, поэтому лемма из базы может
+     * отличаться от запрошенной (например, «е» и «ё»). Такие леммы ищутся по одной.
+     */
+    private Map<String, Integer> selectLemmaIds(Integer siteId, List<String> lemmas) {
+        String sql = "SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma IN (" +
+                String.join(", ", Collections.nCopies(lemmas.size(), "?")) + ")";
+        List<Object> args = new ArrayList<>(lemmas.size() + 1);
+        args.add(siteId);
+        args.addAll(lemmas);
+        Map<String, Integer> ids = new HashMap<>();
+        jdbcTemplate.query(sql, resultSet -> {
+            ids.put(resultSet.getString("lemma"), resultSet.getInt("id"));
+        }, args.toArray());
+
+        for (String lemma : lemmas) {
+            if (!ids.containsKey(lemma)) {
+                jdbcTemplate.query("SELECT id FROM lemma WHERE site_id = ? AND lemma = ?",
+                        resultSet -> {
+                            ids.put(lemma, resultSet.getInt("id"));
+                        }, siteId, lemma);
+            }
+        }
+        return ids;
+    }
+
+    private void insertIndices(List<PendingIndex> rows) {
+        String sql = "INSERT INTO `index` (page_id, lemma_id, `rank`, positions) VALUES " +
+                placeholders(rows.size(), 4) +
+                " ON DUPLICATE KEY UPDATE `rank` = VALUES(`rank`), positions = VALUES(positions)";
+        Object[] args = new Object[rows.size() * 4];
+        for (int i = 0; i < rows.size(); i++) {
+            PendingIndex row = rows.get(i);
+            args[i * 4] = row.pageId();
+            args[i * 4 + 1] = row.lemmaId();
+            args[i * 4 + 2] = row.rank();
+            args[i * 4 + 3] = row.positions();
+        }
+        jdbcTemplate.update(sql, args);
+    }
+
+    /**
+     * Делит пакет пополам, пока не останутся отдельные строки, нарушающие ограничения базы.
+     */
+    private void insertSkippingInvalid(List<PendingIndex> rows) {
+        try {
+            inTransaction(() -> insertIndices(rows));
+        } catch (DataIntegrityViolationException e) {
+            if (rows.size() == 1) {
+                log.warn("Skip index row of page {} and lemma {}: {}", rows.get(0).pageId(), rows.get(0).lemmaId(),
+                        e.getMessage());
+                return;
+            }
+            insertSkippingInvalid(rows.subList(0, rows.size() / 2));
+            insertSkippingInvalid(rows.subList(rows.size() / 2, rows.size()));
+        }
+    }
+
+    private void updateFrequencies(Map<Integer, Map<Integer, Integer>> deltas) {
+        List<Object[]> args = new ArrayList<>();
+        deltas.values().forEach(siteDeltas -> siteDeltas.forEach((lemmaId, delta) ->
+                args.add(new Object[]{delta, lemmaId})));
+        for (List<Object[]> chunk : chunks(args)) {
+            jdbcTemplate.batchUpdate("UPDATE lemma SET frequency = frequency + ? WHERE id = ?", chunk);
+        }
+    }
+
+    private Map<Integer, Map<Integer, Integer>> drainFrequencies() {
+        Map<Integer, Map<Integer, Integer>> deltas = new HashMap<>();
+        frequencies.forEach((siteId, siteFrequencies) -> {
+            Map<Integer, Integer> siteDeltas = siteFrequencies.drain();
+            if (!siteDeltas.isEmpty()) {
+                deltas.put(siteId, siteDeltas);
+            }
+        });
+        return deltas;
+    }
+
+    private void inTransaction(Runnable action) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> action.run());
+    }
+
+    private <T> List<List<T>> chunks(List<T> list) {
+        int batchSize = Math.max(1, settings.getBatchSize());
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += batchSize) {
+            chunks.add(list.subList(from, Math.min(from + batchSize, list.size())));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(int rows, int columns) {
+        String row = "(" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+        return String.join(", ", Collections.nCopies(rows, row));
+    }
+
+    private record PendingIndex(Integer siteId, Integer pageId, Integer lemmaId, Float rank, byte[] positions) {
+    }
+}
@@ -0,0 +1,105 @@
+package searchengine.service.lemma;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.dto.index.LemmaIdRow;
+import searchengine.repository.LemmaRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Словарь лемм сайтов: лемма -> id строки таблицы lemma.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LemmaDictionary {
+    private final LemmaRepository lemmaRepository;
+    private final IndexBulkWriter indexBulkWriter;
+    private final Map<Integer, Map<String, Integer>> sites = new ConcurrentHashMap<>();
+    private final Map<Integer, ReadWriteLock> locks = new ConcurrentHashMap<>();
+
+    public Optional<Integer> find(Integer siteId, String lemma) {
+        return Optional.ofNullable(getSiteLemmas(siteId).get(lemma));
+    }
+
+    public Map<String, Integer> resolve(Integer siteId, Collection<String> lemmas) {
+        Lock lock = getLock(siteId).readLock();
+        lock.lock();
+        try {
+            return resolve(getSiteLemmas(siteId), siteId, lemmas);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет из базы леммы без страниц и убирает их id из словаря. Новые леммы сайта
+     * в это время не выдаются, чтобы страница не получила id удаляемой леммы.
+     *
+     * @return число удалённых лемм
+     */
+    public int removeUnused(Integer siteId) {
+        Lock lock = getLock(siteId).writeLock();
+        lock.lock();
+        try {
+            List<Integer> lemmaIds = indexBulkWriter.deleteUnusedLemmas(siteId);
+            Map<String, Integer> siteLemmas = sites.get(siteId);
+            if (siteLemmas != null && !lemmaIds.isEmpty()) {
+                siteLemmas.values().removeAll(new HashSet<>(lemmaIds));
+            }
+            return lemmaIds.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void removeSite(Integer siteId) {
+        sites.remove(siteId);
+    }
+
+    public void clear() {
+        sites.clear();
+    }
+
+    private Map<String, Integer> resolve(Map<String, Integer> siteLemmas, Integer siteId, Collection<String> lemmas) {
+        Map<String, Integer> lemmaIds = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String lemma : lemmas) {
+            Integer id = siteLemmas.get(lemma);
+            if (id == null) {
+                missing.add(lemma);
+            } else {
+                lemmaIds.put(lemma, id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            indexBulkWriter.createLemmas(siteId, missing).forEach((lemma, id) ->
+                    lemmaIds.put(lemma, siteLemmas.merge(lemma, id, (current, created) -> current)));
+        }
+        return lemmaIds;
+    }
+
+    private ReadWriteLock getLock(Integer siteId) {
+        return locks.computeIfAbsent(siteId, id -> new ReentrantReadWriteLock());
+    }
+
+    private Map<String, Integer> getSiteLemmas(Integer siteId) {
+        return sites.computeIfAbsent(siteId, this::load);
+    }
+
+    private Map<String, Integer> load(Integer siteId) {
+        Map<String, Integer> siteLemmas = new ConcurrentHashMap<>();
+        for (LemmaIdRow row : lemmaRepository.findAllIdsBySiteId(siteId)) {
+            siteLemmas.put(row.lemma(), row.id());
+        }
+        log.info("Loaded {} lemmas to dictionary for site with id {}", siteLemmas.size(), siteId);
+        return siteLemmas;
+    }
+}
@@ -3,79 +3,88 @@ package searchengine.service.lemma;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import searchengine.model.IndexEntity;
-import searchengine.model.LemmaEntity;
 import searchengine.model.PageEntity;
-import searchengine.model.SiteEntity;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
-import searchengine.repository.SiteRepository;
-import searchengine.util.HtmlParser;
+import searchengine.service.index.InvertedIndex;
+import searchengine.util.LemmaCounts;
 import searchengine.util.LemmaParser;
 
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class LemmaService {
-    private final IndexRepository indexRepository;
-    private final LemmaRepository lemmaRepository;
-    private final SiteRepository siteRepository;
     private final LemmaParser lemmaParser;
-    private final HtmlParser pageService;
+    private final InvertedIndex invertedIndex;
+    private final IndexBulkWriter indexBulkWriter;
+    private final LemmaDictionary lemmaDictionary;
 
     public void findAndSave(PageEntity page) {
-        String text = pageService.htmlToText(page.getContent());
-        Map<String, Long> lemmas = lemmaParser.parseToLemmaWithCount(text);
-        Set<LemmaEntity> lemmaSetToSave = new HashSet<>();
-        Set<IndexEntity> indices = new HashSet<>();
-        synchronized (lemmaRepository) {
-            lemmas.forEach((name, count) -> {
-                Optional<LemmaEntity> optionalLemma = lemmaRepository.findBySiteAndLemma(page.getSite(), name);
-                LemmaEntity lemma;
-                if (optionalLemma.isPresent()) {
-                    lemma = optionalLemma.get();
-                } else {
-                    lemma = LemmaEntity.builder()
-                            .frequency(0)
-                            .lemma(name)
-                            .site(page.getSite())
-                            .build();
-                    lemmaSetToSave.add(lemma);
-                }
+        Map<Integer, int[]> positions = getPositions(page);
+        indexBulkWriter.add(page.getSite().getId(), page.getId(), positions);
+        indexBulkWriter.addFrequencies(page.getSite().getId(), positions.keySet(), 1);
+        invertedIndex.addPage(page.getSite().getId(), page.getId(), positions);
+    }
+
+    /**
+     * Переиндексирует изменившуюся страницу. Старые леммы остаются в поиске,
+     * пока не посчитаны новые, и заменяются в индексе в памяти одним действием.
+     */
+    public void reindexPage(PageEntity page) {
+        Map<Integer, int[]> positions = page.getCode() < 400 ? getPositions(page) : Map.of();
+        List<Integer> oldLemmaIds = indexBulkWriter.findLemmaIds(page.getId());
+        invertedIndex.replacePage(page.getSite().getId(), page.getId(), oldLemmaIds, positions);
+        indexBulkWriter.addFrequencies(page.getSite().getId(), oldLemmaIds, -1);
+        indexBulkWriter.deletePageIndices(page.getId());
+        indexBulkWriter.add(page.getSite().getId(), page.getId(), positions);
+        indexBulkWriter.addFrequencies(page.getSite().getId(), positions.keySet(), 1);
+    }
+
+    public void deletePage(PageEntity page) {
+        List<Integer> lemmaIds = indexBulkWriter.findLemmaIds(page.getId());
+        invertedIndex.removePage(page.getSite().getId(), page.getId(), lemmaIds);
+        indexBulkWriter.addFrequencies(page.getSite().getId(), lemmaIds, -1);
+        indexBulkWriter.deletePageIndices(page.getId());
+    }
+
+    public void completeIndexing(Integer siteId) {
+        int unusedLemmas = lemmaDictionary.removeUnused(siteId);
+        log.info("Delete unused lemmas for site with id {}: {}", siteId, unusedLemmas);
+    }
 
-                indices.add(IndexEntity.builder()
-                        .page(page)
-                        .lemma(lemma)
-                        .rank((float) count)
-                        .build());
-            });
-            lemmaRepository.saveAll(lemmaSetToSave);
+    /**
+     * @return номера слов текста страницы по id леммы; число позиций — ранг леммы на странице
+     */
+    private Map<Integer, int[]> getPositions(PageEntity page) {
+        LemmaCounts lemmas = lemmaParser.parseToLemmaWithCount(page.getText());
+        Map<String, Integer> lemmaIds = lemmaDictionary.resolve(page.getSite().getId(), lemmas.keys());
+        Map<Integer, int[]> positions = new HashMap<>();
+        for (String name : lemmas.keys()) {
+            Integer lemmaId = lemmaIds.get(name);
+            if (lemmaId != null) {
+                positions.merge(lemmaId, lemmas.positions(name), LemmaService::union);
+            }
         }
-        indexRepository.saveAll(indices);
+        return positions;
     }
 
-    public void updateLemmasFrequency(Integer siteId) {
-        SiteEntity site = siteRepository.findById(siteId).orElseThrow(() -> new IllegalStateException("Site not found"));
-        Set<LemmaEntity> lemmaToSave = new HashSet<>();
-        Set<LemmaEntity> lemmaToDelete = new HashSet<>();
-        log.info("Start calculate lemmas frequency for site: {}", site);
-        for (LemmaEntity lemma : lemmaRepository.findAllBySite(site)) {
-            int frequency = indexRepository.countByLemma(lemma);
-            if (frequency == 0) {
-                lemmaToDelete.add(lemma);
-            } else if (lemma.getFrequency() != frequency) {
-                lemma.setFrequency(frequency);
-                lemmaToSave.add(lemma);
+    /**
+     * Разные леммы могут получить один id из-за collation базы (например, «е» и «ё»).
+     */
+    private static int[] union(int[] left, int[] right) {
+        int[] merged = new int[left.length + right.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length || j < right.length) {
+            int next = j == right.length || i < left.length && left[i] <= right[j] ? left[i++] : right[j++];
+            if (count == 0 || merged[count - 1] != next) {
+                merged[count++] = next;
             }
         }
-        log.info("Delete old lemmas: " + lemmaToDelete.size());
-        lemmaRepository.deleteAll(lemmaToDelete);
-        log.info("Update lemmas: " + lemmaToSave.size());
-        lemmaRepository.saveAll(lemmaToSave);
+        return Arrays.copyOf(merged, count);
     }
 }
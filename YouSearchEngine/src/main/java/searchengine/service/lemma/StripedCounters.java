@@ -0,0 +1,46 @@
+package searchengine.service.lemma;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Накопленные приращения счётчиков по ключу. Ключи распределены по независимым
+ * полосам, чтобы потоки индексации не конкурировали за одну блокировку.
+ */
+class StripedCounters {
+    private static final int STRIPES = 16;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    StripedCounters() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    void add(int key, int delta) {
+        stripes[Math.floorMod(key, STRIPES)].add(key, delta);
+    }
+
+    Map<Integer, Integer> drain() {
+        Map<Integer, Integer> deltas = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            deltas.putAll(stripe.drain());
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        return deltas;
+    }
+
+    private static class Stripe {
+        private Map<Integer, Integer> deltas = new HashMap<>();
+
+        synchronized void add(int key, int delta) {
+            deltas.merge(key, delta, Integer::sum);
+        }
+
+        synchronized Map<Integer, Integer> drain() {
+            Map<Integer, Integer> drained = deltas;
+            deltas = new HashMap<>();
+            return drained;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package searchengine.service.search;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchCacheSettings;
+import searchengine.service.search.TopPages.RankedPage;
+import searchengine.util.LruCache;
+
+import java.util.List;
+
+/**
+ * Кэш результатов поиска; ключ содержит версии индекса сайтов, поэтому устаревшие результаты
+ * не находятся.
+ */
+@Component
+public class QueryCache {
+    private final LruCache<Key, Result> results;
+
+    public QueryCache(SearchCacheSettings settings) {
+        this.results = new LruCache<>(settings.getMaxSize(), settings.getTtl());
+    }
+
+    /**
+     * @param size сколько лучших страниц нужно запросу
+     * @return результат, если он есть в кэше и содержит не меньше {@code size} страниц
+     * или все найденные страницы
+     */
+    public Result get(Key key, int size) {
+        Result result = results.get(key);
+        if (result == null) {
+            return null;
+        }
+        return result.pages().size() >= size || result.pages().size() == result.count() ? result : null;
+    }
+
+    public void put(Key key, Result result) {
+        results.put(key, result);
+    }
+
+    /**
+     * @param query        разобранный запрос
+     * @param siteIds      сайты, по которым идёт поиск
+     * @param siteVersions версии индекса этих сайтов
+     */
+    public record Key(SearchQuery query, List<Integer> siteIds, List<Long> siteVersions) {
+    }
+
+    /**
+     * @param pages лучшие страницы по убыванию ранга
+     * @param count общее число найденных страниц
+     */
+    public record Result(List<RankedPage> pages, int count) {
+    }
+}
@@ -0,0 +1,247 @@
+package searchengine.service.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.exceptions.BadRequestException;
+import searchengine.service.lemma.WordLemmas;
+import searchengine.util.LemmaParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Разбор поискового запроса: слова, фразы в кавычках, NEAR/k, OR, NOT и скобки,
+ * а также фильтры {@code site:} и {@code -site:}, действующие на весь запрос.
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryParser {
+    private static final int DEFAULT_NEAR_DISTANCE = 10;
+    private static final Pattern NEAR = Pattern.compile("NEAR(?:/(\\d{1,4}))?");
+    private static final String SITE_FILTER = "site:";
+    private final LemmaParser lemmaParser;
+
+    public Result parse(String query) {
+        List<String> sites = new ArrayList<>();
+        List<String> excludedSites = new ArrayList<>();
+        List<Token> tokens = tokenize(query, sites, excludedSites);
+        return new Result(new SearchQuery.All(new Parser(tokens).parse()), sites, excludedSites);
+    }
+
+    private List<Token> tokenize(String query, List<String> sites, List<String> excludedSites) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char symbol = query.charAt(i);
+            if (Character.isWhitespace(symbol)) {
+                i++;
+            } else if (symbol == '(' || symbol == ')') {
+                tokens.add(new Token(symbol == '(' ? Type.OPEN : Type.CLOSE, null, 0));
+                i++;
+            } else if (symbol == '-' && i + 1 < query.length() && !Character.isWhitespace(query.charAt(i + 1))) {
+                tokens.add(new Token(Type.NOT, null, 0));
+                i++;
+            } else if (symbol == '"') {
+                int end = query.indexOf('"', i + 1);
+                end = end < 0 ? query.length() : end;
+                tokens.add(new Token(Type.PHRASE, query.substring(i + 1, end), 0));
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))
+                        && "\"()".indexOf(query.charAt(end)) < 0) {
+                    end++;
+                }
+                String text = query.substring(i, end);
+                Matcher near = NEAR.matcher(text);
+                if (near.matches()) {
+                    tokens.add(new Token(Type.NEAR, null,
+                            near.group(1) == null ? DEFAULT_NEAR_DISTANCE : Integer.parseInt(near.group(1))));
+                } else if (text.equals("OR")) {
+                    tokens.add(new Token(Type.OR, null, 0));
+                } else if (text.equals("NOT")) {
+                    tokens.add(new Token(Type.NOT, null, 0));
+                } else if (text.regionMatches(true, 0, SITE_FILTER, 0, SITE_FILTER.length())
+                        && text.length() > SITE_FILTER.length()) {
+                    if (!tokens.isEmpty() && tokens.get(tokens.size() - 1).type() == Type.NOT) {
+                        tokens.remove(tokens.size() - 1);
+                        excludedSites.add(text.substring(SITE_FILTER.length()));
+                    } else {
+                        sites.add(text.substring(SITE_FILTER.length()));
+                    }
+                } else {
+                    tokens.add(new Token(Type.WORD, text, 0));
+                }
+                i = end;
+            }
+        }
+        return tokens;
+    }
+
+    private SearchQuery.Word word(String token) {
+        List<WordLemmas> words = lemmaParser.parseToWordWithLemmas(token);
+        return words.isEmpty() ? null : toWord(words.get(0));
+    }
+
+    private SearchQuery phrase(String text) {
+        List<WordLemmas> words = lemmaParser.parseToWordWithLemmas(text);
+        if (words.size() < 2) {
+            return words.isEmpty() ? null : toWord(words.get(0));
+        }
+        return new SearchQuery.Phrase(words.stream().map(QueryParser::toWord).toList(),
+                words.stream().map(WordLemmas::getIndex).toList());
+    }
+
+    private static SearchQuery.Word toWord(WordLemmas word) {
+        return new SearchQuery.Word(word.getLemmas().stream().sorted().toList());
+    }
+
+    /**
+     * @param query условия запроса
+     * @param sites         домены из фильтров {@code site:}; пустой список — без ограничения
+     * @param excludedSites домены из фильтров {@code -site:} и {@code NOT site:}
+     */
+    public record Result(SearchQuery query, List<String> sites, List<String> excludedSites) {
+    }
+
+    private enum Type {
+        WORD, PHRASE, NEAR, OR, NOT, OPEN, CLOSE
+    }
+
+    private record Token(Type type, String text, int distance) {
+    }
+
+    /**
+     * Рекурсивный спуск по лексемам. Условие, от которого ничего не осталось (например,
+     * из одних стоп-слов), пропускается вместе со своим оператором, как и оператор без условия.
+     * Лишние скобки игнорируются.
+     */
+    private class Parser {
+        private final List<Token> tokens;
+        private int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        List<SearchQuery> parse() {
+            List<SearchQuery> clauses = new ArrayList<>();
+            while (position < tokens.size()) {
+                if (is(Type.CLOSE)) {
+                    position++;
+                } else {
+                    clauses.addAll(sequence());
+                }
+            }
+            return clauses;
+        }
+
+        /**
+         * Условия через пробел до закрывающей скобки или конца запроса.
+         */
+        private List<SearchQuery> sequence() {
+            List<SearchQuery> clauses = new ArrayList<>();
+            while (position < tokens.size() && !is(Type.CLOSE)) {
+                SearchQuery clause = disjunction();
+                if (clause != null) {
+                    clauses.add(clause);
+                }
+            }
+            return clauses;
+        }
+
+        /**
+         * Отрицание среди вариантов {@code OR} потребовало бы перебора всех страниц сайта, поэтому запрещено.
+         */
+        private SearchQuery disjunction() {
+            List<SearchQuery> clauses = new ArrayList<>();
+            add(clauses, unary());
+            boolean or = false;
+            while (is(Type.OR)) {
+                position++;
+                or = true;
+                add(clauses, unary());
+            }
+            if (or && clauses.stream().anyMatch(SearchQuery.Not.class::isInstance)) {
+                throw new BadRequestException("Отрицание нельзя использовать как вариант OR");
+            }
+            if (clauses.isEmpty()) {
+                return null;
+            }
+            return clauses.size() == 1 ? clauses.get(0) : new SearchQuery.Any(clauses);
+        }
+
+        private SearchQuery unary() {
+            if (!is(Type.NOT)) {
+                return primary();
+            }
+            position++;
+            SearchQuery clause = unary();
+            if (clause == null) {
+                return null;
+            }
+            return clause instanceof SearchQuery.Not not ? not.clause() : new SearchQuery.Not(clause);
+        }
+
+        private SearchQuery primary() {
+            if (position == tokens.size() || is(Type.CLOSE)) {
+                return null;
+            }
+            Token token = tokens.get(position++);
+            switch (token.type()) {
+                case OPEN -> {
+                    List<SearchQuery> clauses = sequence();
+                    if (is(Type.CLOSE)) {
+                        position++;
+                    }
+                    return clauses.isEmpty() ? null
+                            : clauses.size() == 1 ? clauses.get(0) : new SearchQuery.All(clauses);
+                }
+                case PHRASE -> {
+                    return phrase(token.text());
+                }
+                case WORD -> {
+                    SearchQuery.Word word = word(token.text());
+                    return word == null ? null : near(word);
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * Заменяет {@code слово NEAR/k слово} на {@link SearchQuery.Near}. В цепочке
+         * {@code a NEAR b NEAR c} должны выполниться оба условия.
+         */
+        private SearchQuery near(SearchQuery.Word left) {
+            List<SearchQuery> clauses = new ArrayList<>();
+            while (is(Type.NEAR) && position + 1 < tokens.size()
+                    && tokens.get(position + 1).type() == Type.WORD) {
+                int distance = tokens.get(position).distance();
+                SearchQuery.Word right = word(tokens.get(position + 1).text());
+                position += 2;
+                if (right != null) {
+                    clauses.add(new SearchQuery.Near(left, right, distance));
+                    left = right;
+                }
+            }
+            if (clauses.isEmpty()) {
+                return left;
+            }
+            return clauses.size() == 1 ? clauses.get(0) : new SearchQuery.All(clauses);
+        }
+
+        private boolean is(Type type) {
+            return position < tokens.size() && tokens.get(position).type() == type;
+        }
+
+        private void add(List<SearchQuery> clauses, SearchQuery clause) {
+            if (clause != null) {
+                clauses.add(clause);
+            }
+        }
+    }
+}
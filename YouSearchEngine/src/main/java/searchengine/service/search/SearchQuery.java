@@ -0,0 +1,66 @@
+package searchengine.service.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разобранный поисковый запрос: слова заменены на их леммы, стоп-слова отброшены.
+ * Не зависит от сайта, поэтому служит ключом кэша результатов.
+ */
+public sealed interface SearchQuery {
+    /**
+     * @return все слова запроса в порядке следования
+     */
+    List<Word> words();
+
+    /**
+     * @param lemmas отсортированные леммы слова
+     */
+    record Word(List<String> lemmas) implements SearchQuery {
+        @Override
+        public List<Word> words() {
+            return List.of(this);
+        }
+    }
+
+    /**
+     * @param offsets номера слов во фразе с учётом стоп-слов
+     */
+    record Phrase(List<Word> words, List<Integer> offsets) implements SearchQuery {
+    }
+
+    record Near(Word left, Word right, int distance) implements SearchQuery {
+        @Override
+        public List<Word> words() {
+            return List.of(left, right);
+        }
+    }
+
+    record All(List<SearchQuery> clauses) implements SearchQuery {
+        @Override
+        public List<Word> words() {
+            List<Word> words = new ArrayList<>();
+            clauses.forEach(clause -> words.addAll(clause.words()));
+            return words;
+        }
+    }
+
+    record Any(List<SearchQuery> clauses) implements SearchQuery {
+        @Override
+        public List<Word> words() {
+            List<Word> words = new ArrayList<>();
+            clauses.forEach(clause -> words.addAll(clause.words()));
+            return words;
+        }
+    }
+
+    /**
+     * Исключённое условие. Его слов нет на найденных страницах, поэтому {@link #words()} пуст.
+     */
+    record Not(SearchQuery clause) implements SearchQuery {
+        @Override
+        public List<Word> words() {
+            return List.of();
+        }
+    }
+}
@@ -3,33 +3,42 @@ package searchengine.service.search;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import searchengine.config.SearchCacheSettings;
+import searchengine.dto.search.PageText;
 import searchengine.dto.search.SearchData;
 import searchengine.dto.search.SearchResponse;
 import searchengine.exceptions.BadRequestException;
 import searchengine.exceptions.NotFoundException;
-import searchengine.model.*;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
+import searchengine.model.SiteEntity;
+import searchengine.model.SiteStatus;
+import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.service.content.PageContentStore;
+import searchengine.service.index.IndexQuery;
+import searchengine.service.index.InvertedIndex;
+import searchengine.service.lemma.LemmaDictionary;
+import searchengine.service.search.TopPages.RankedPage;
 import searchengine.util.HtmlParser;
-import searchengine.util.LemmaParser;
 import searchengine.util.SnippetGenerator;
 
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class SearchServiceImpl implements SearchService {
     private static final String URL_REGEX = "^https?://(?:www\\.)?[-a-zA-Z0-9@:%._+~#=]{1,256}\\b$";
-    private final IndexRepository indexRepository;
     private final SiteRepository siteRepository;
-    private final LemmaRepository lemmaRepository;
+    private final PageRepository pageRepository;
+    private final PageContentStore contentStore;
+    private final InvertedIndex invertedIndex;
+    private final LemmaDictionary lemmaDictionary;
     private final HtmlParser htmlParser;
     private final SnippetGenerator snippetGenerator;
-    private final LemmaParser lemmaParser;
+    private final QueryParser queryParser;
+    private final QueryCache queryCache;
+    private final SnippetCache snippetCache;
+    private final SearchCacheSettings cacheSettings;
 
     @Override
     public SearchResponse search(String query, String site, Integer offset, Integer limit) {
@@ -38,98 +47,200 @@ public class SearchServiceImpl implements SearchService {
         if (query == null || query.isBlank()) {
             throw new BadRequestException("Задан пустой поисковый запрос");
         }
-        List<SiteEntity> sites = getSites(site);
-        Set<String> queryLemmas = lemmaParser.parseToLemmaWithCount(query.trim()).keySet();
+        QueryParser.Result parsedQuery = queryParser.parse(query.trim());
+        SearchQuery searchQuery = parsedQuery.query();
+        List<SiteEntity> sites = getSites(site, parsedQuery.sites(), parsedQuery.excludedSites());
+        List<String> queryLemmas = searchQuery.words().stream()
+                .flatMap(word -> word.lemmas().stream())
+                .distinct()
+                .sorted()
+                .toList();
+
+        int size = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        QueryCache.Key key = new QueryCache.Key(searchQuery,
+                sites.stream().map(SiteEntity::getId).toList(),
+                sites.stream().map(persistSite -> invertedIndex.version(persistSite.getId())).toList());
+        QueryCache.Result result = queryCache.get(key, size);
+        if (result == null) {
+            result = rank(sites, searchQuery, Math.max(size, cacheSettings.getPrefetch()));
+            queryCache.put(key, result);
+        }
+
+        List<RankedPage> ranked = result.pages();
+        int count = result.count();
+        if (ranked.isEmpty()) {
+            log.info("Search time: {} ms.", System.currentTimeMillis() - startTime);
+            return new SearchResponse(count, List.of());
+        }
 
-        Map<PageEntity, Double> pageRank = new HashMap<>();
+        double maxRank = ranked.get(0).rank();
+        List<RankedPage> window = subList(ranked, offset, limit);
 
+        Map<Integer, PageText> pages = new HashMap<>();
+        if (!window.isEmpty()) {
+            pageRepository.findAllTextsByIdIn(window.stream().map(RankedPage::pageId).toList())
+                    .forEach(page -> pages.put(page.id(), page));
+        }
+        Map<Integer, SiteEntity> sitesById = new HashMap<>();
+        sites.forEach(persistSite -> sitesById.put(persistSite.getId(), persistSite));
+
+        List<SearchData> searchData = window.parallelStream()
+                .filter(rankedPage -> pages.containsKey(rankedPage.pageId()))
+                .map(rankedPage -> {
+                    PageText page = pages.get(rankedPage.pageId());
+                    return toSearchData(page, sitesById.get(page.siteId()), searchQuery, queryLemmas,
+                            maxRank > 0 ? (float) (rankedPage.rank() / maxRank) : 1f);
+                })
+                .toList();
+        log.info("Search time: {} ms.", System.currentTimeMillis() - startTime);
+        return new SearchResponse(count, searchData);
+    }
+
+    private QueryCache.Result rank(List<SiteEntity> sites, SearchQuery searchQuery, int size) {
+        TopPages topPages = new TopPages(size);
+        int count = 0;
         for (SiteEntity persistSite : sites) {
-            List<LemmaEntity> sortedLemmas = queryLemmas.stream()
-                    .map(lemma -> lemmaRepository.findBySiteAndLemma(persistSite, lemma))
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .sorted(Comparator.comparing(LemmaEntity::getFrequency))
-                    .toList();
+            IndexQuery indexQuery = resolve(searchQuery, persistSite.getId());
+            Map<Integer, Double> pageIdRank = invertedIndex.search(persistSite.getId(), indexQuery);
+            pageIdRank.forEach(topPages::add);
+            count += pageIdRank.size();
+        }
+        return new QueryCache.Result(topPages.toList(), count);
+    }
 
-            Set<LemmaEntity> lemmaSet = new HashSet<>(sortedLemmas);
+    /**
+     * Заменяет леммы запроса на их id на сайте. Лемм, которых на сайте нет, в запросе не будет.
+     */
+    private IndexQuery resolve(SearchQuery query, Integer siteId) {
+        if (query instanceof SearchQuery.Word word) {
+            return term(word, siteId);
+        }
+        if (query instanceof SearchQuery.Phrase phrase) {
+            return new IndexQuery.Phrase(phrase.words().stream().map(word -> term(word, siteId)).toList(),
+                    phrase.offsets());
+        }
+        if (query instanceof SearchQuery.Near near) {
+            return new IndexQuery.Near(term(near.left(), siteId), term(near.right(), siteId), near.distance());
+        }
+        if (query instanceof SearchQuery.Any any) {
+            return new IndexQuery.Or(any.clauses().stream().map(clause -> resolve(clause, siteId)).toList());
+        }
+        if (query instanceof SearchQuery.Not not) {
+            return new IndexQuery.Not(resolve(not.clause(), siteId));
+        }
+        return new IndexQuery.And(((SearchQuery.All) query).clauses().stream()
+                .map(clause -> resolve(clause, siteId))
+                .toList());
+    }
 
-            Set<PageEntity> pages = getPages(sortedLemmas);
+    private IndexQuery.Term term(SearchQuery.Word word, Integer siteId) {
+        return new IndexQuery.Term(word.lemmas().stream()
+                .map(lemma -> lemmaDictionary.find(siteId, lemma))
+                .flatMap(Optional::stream)
+                .toList());
+    }
 
-            pageRank.putAll(pages.stream().collect(Collectors.toMap(Function.identity(),
-                    page -> sumRank(page, lemmaSet))));
+    /**
+     * Заголовок и текст страницы сохраняются при индексации. HTML разбирается
+     * только для страниц, проиндексированных до появления этих колонок.
+     */
+    private SearchData toSearchData(PageText page, SiteEntity site, SearchQuery searchQuery,
+                                    List<String> queryLemmas, float relevance) {
+        String title = page.title();
+        String text = page.text();
+        boolean indexedText = title != null && text != null;
+        if (!indexedText) {
+            String content = contentStore.find(page.id()).orElse("");
+            title = htmlParser.getTitle(content);
+            text = htmlParser.htmlToText(content);
         }
+        String pageText = text;
+        String snippet = snippetCache.get(new SnippetCache.Key(page.id(), page.contentHash(), queryLemmas),
+                () -> snippetGenerator.generateSnippet(queryWords(searchQuery), pageText,
+                        indexedText ? positions(page, queryLemmas) : Map.of()));
+        return new SearchData(site, page.path(), title, snippet, relevance);
+    }
 
-        Optional<Double> optionalMaxRank = pageRank.values().stream().max(Double::compareTo);
-        List<SearchData> searchData;
-        if (optionalMaxRank.isEmpty()) {
-            searchData = List.of();
-        } else {
-            double maxRank = optionalMaxRank.get();
-            searchData = pageRank.entrySet().parallelStream()
-                    .map(entry -> {
-                        PageEntity page = entry.getKey();
-                        Double rank = entry.getValue();
-                        String content = page.getContent();
-                        return new SearchData(page, htmlParser.getTitle(content),
-                                snippetGenerator.generateSnippet(query, content),
-                                (float) (rank / maxRank));
-                    })
-                    .sorted((a, b) -> Float.compare(b.relevance(), a.relevance()))
-                    .toList();
+    private static List<List<String>> queryWords(SearchQuery searchQuery) {
+        return searchQuery.words().stream().map(SearchQuery.Word::lemmas).toList();
+    }
+
+    /**
+     * Позиции лемм запроса на странице берутся из индекса, они нумеруют слова сохранённого текста страницы.
+     */
+    private Map<String, int[]> positions(PageText page, List<String> queryLemmas) {
+        Map<Integer, String> lemmas = new HashMap<>();
+        for (String lemma : queryLemmas) {
+            lemmaDictionary.find(page.siteId(), lemma).ifPresent(lemmaId -> lemmas.put(lemmaId, lemma));
         }
-        log.info("Search time: {} ms.", System.currentTimeMillis() - startTime);
-        return new SearchResponse(searchData.size(), subList(searchData, offset, limit));
+        Map<String, int[]> positions = new HashMap<>();
+        invertedIndex.positions(page.siteId(), page.id(), lemmas.keySet())
+                .forEach((lemmaId, lemmaPositions) -> positions.put(lemmas.get(lemmaId), lemmaPositions));
+        return positions;
     }
 
-    private List<SearchData> subList(List<SearchData> searchData, Integer offset, Integer limit) {
+    private static <T> List<T> subList(List<T> list, Integer offset, Integer limit) {
         int fromIndex = offset;
         int toIndex = fromIndex + limit;
 
-        if (toIndex > searchData.size()) {
-            toIndex = searchData.size();
+        if (toIndex > list.size()) {
+            toIndex = list.size();
         }
         if (fromIndex > toIndex) {
             return List.of();
         }
 
-        return searchData.subList(fromIndex, toIndex);
+        return list.subList(fromIndex, toIndex);
     }
 
-    private double sumRank(PageEntity page, Set<LemmaEntity> lemmas) {
-        return indexRepository.findAllByPageAndLemmaIn(page, lemmas).stream().mapToDouble(IndexEntity::getRank).sum();
-    }
-
-    private Set<PageEntity> getPages(List<LemmaEntity> sortedLemmas) {
-        if (sortedLemmas.isEmpty()) return Set.of();
-        Set<PageEntity> pages = sortedLemmas.get(0).getIndices().stream().map(IndexEntity::getPage).collect(Collectors.toSet());
-        for (int i = 1; i < sortedLemmas.size(); i++) {
-            pages = indexRepository.findAllByLemmaAndPageIn(sortedLemmas.get(i), pages).stream()
-                    .map(IndexEntity::getPage)
-                    .collect(Collectors.toSet());
-            if (pages.isEmpty()) {
-                return pages;
-            }
-        }
-        return pages;
-    }
-
-    private List<SiteEntity> getSites(String siteUrl) {
+    /**
+     * @param domains         домены из фильтров {@code site:} запроса; поиск идёт только по сайтам с ними
+     * @param excludedDomains домены из фильтров {@code -site:}; сайты с ними исключаются
+     */
+    private List<SiteEntity> getSites(String siteUrl, List<String> domains, List<String> excludedDomains) {
         List<SiteEntity> sites;
         if (siteUrl == null || siteUrl.isBlank()) {
-            sites = siteRepository.findAll();
+            sites = siteRepository.findAllByServingTrue();
         } else {
             SiteEntity site = getSite(siteUrl);
             sites = List.of(site);
         }
+        if (!domains.isEmpty()) {
+            sites = sites.stream().filter(persistSite -> matchesDomain(persistSite, domains)).toList();
+        }
+        if (!excludedDomains.isEmpty()) {
+            sites = sites.stream().filter(persistSite -> !matchesDomain(persistSite, excludedDomains)).toList();
+        }
         checkIndexed(sites);
         return sites;
     }
 
+    /**
+     * Сайт подходит, если его домен совпадает с доменом фильтра или является его поддоменом.
+     * Префикс {@code www.} не учитывается.
+     */
+    private static boolean matchesDomain(SiteEntity site, List<String> domains) {
+        String siteDomain = domain(site.getUrl());
+        return domains.stream()
+                .map(SearchServiceImpl::domain)
+                .anyMatch(domain -> siteDomain.equals(domain) || siteDomain.endsWith("." + domain));
+    }
+
+    private static String domain(String address) {
+        String domain = address.toLowerCase(Locale.ROOT)
+                .replaceFirst("^https?://", "")
+                .replaceFirst("[/:?#].*$", "");
+        return domain.startsWith("www.") ? domain.substring(4) : domain;
+    }
+
     private SiteEntity getSite(String siteUrl) {
         String trimSiteUrl = siteUrl.trim();
         if (trimSiteUrl.matches(URL_REGEX)) {
-            return siteRepository.findByUrlIgnoreCase(trimSiteUrl)
-                    .orElseThrow(() -> new NotFoundException("Сайт не найден"));
+            Optional<SiteEntity> site = siteRepository.findByUrlIgnoreCaseAndServingTrue(trimSiteUrl);
+            if (site.isEmpty() && siteRepository.existsByUrlIgnoreCase(trimSiteUrl)) {
+                throw new BadRequestException("Сайт не проиндексирован");
+            }
+            return site.orElseThrow(() -> new NotFoundException("Сайт не найден"));
         } else {
             throw new BadRequestException("Некорректный адрес сайта");
         }
@@ -0,0 +1,33 @@
+package searchengine.service.search;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchCacheSettings;
+import searchengine.util.LruCache;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Кэш сниппетов по странице и леммам запроса. Хэш содержимого в ключе
+ * отделяет сниппеты изменившейся при обновлении страницы.
+ */
+@Component
+public class SnippetCache {
+    private final LruCache<Key, String> snippets;
+
+    public SnippetCache(SearchCacheSettings settings) {
+        this.snippets = new LruCache<>(settings.getSnippetCacheSize(), 0);
+    }
+
+    public String get(Key key, Supplier<String> generator) {
+        String snippet = snippets.get(key);
+        if (snippet == null) {
+            snippet = generator.get();
+            snippets.put(key, snippet);
+        }
+        return snippet;
+    }
+
+    public record Key(Integer pageId, String contentHash, List<String> lemmas) {
+    }
+}
@@ -0,0 +1,96 @@
+package searchengine.service.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * k страниц с наибольшим рангом; при равных рангах выше страница с меньшим id.
+ */
+class TopPages {
+    private final int capacity;
+    private int[] pageIds;
+    private double[] ranks;
+    private int size;
+
+    TopPages(int capacity) {
+        this.capacity = capacity;
+        this.pageIds = new int[Math.min(capacity, 16)];
+        this.ranks = new double[pageIds.length];
+    }
+
+    void add(int pageId, double rank) {
+        if (size < capacity) {
+            if (size == pageIds.length) {
+                int length = (int) Math.min(capacity, pageIds.length * 2L);
+                pageIds = Arrays.copyOf(pageIds, length);
+                ranks = Arrays.copyOf(ranks, length);
+            }
+            pageIds[size] = pageId;
+            ranks[size] = rank;
+            siftUp(size++);
+        } else if (size > 0 && lower(pageIds[0], ranks[0], pageId, rank)) {
+            pageIds[0] = pageId;
+            ranks[0] = rank;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @return отобранные страницы по убыванию ранга; куча после вызова пуста
+     */
+    List<RankedPage> toList() {
+        RankedPage[] sorted = new RankedPage[size];
+        while (size > 0) {
+            sorted[size - 1] = new RankedPage(pageIds[0], ranks[0]);
+            size--;
+            pageIds[0] = pageIds[size];
+            ranks[0] = ranks[size];
+            siftDown(0);
+        }
+        return Arrays.asList(sorted);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!lower(pageIds[index], ranks[index], pageIds[parent], ranks[parent])) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && lower(pageIds[child + 1], ranks[child + 1], pageIds[child], ranks[child])) {
+                child++;
+            }
+            if (!lower(pageIds[child], ranks[child], pageIds[index], ranks[index])) {
+                return;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int pageId = pageIds[i];
+        pageIds[i] = pageIds[j];
+        pageIds[j] = pageId;
+        double rank = ranks[i];
+        ranks[i] = ranks[j];
+        ranks[j] = rank;
+    }
+
+    private static boolean lower(int pageId, double rank, int otherPageId, double otherRank) {
+        return rank < otherRank || rank == otherRank && pageId > otherPageId;
+    }
+
+    record RankedPage(int pageId, double rank) {
+    }
+}
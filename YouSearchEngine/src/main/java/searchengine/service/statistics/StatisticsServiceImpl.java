@@ -2,6 +2,7 @@ package searchengine.service.statistics;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
@@ -12,10 +13,14 @@ import searchengine.model.SiteStatus;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.util.LemmaParser;
 
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -24,12 +29,13 @@ public class StatisticsServiceImpl implements StatisticsService {
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
+    private final LemmaParser lemmaParser;
 
     @Override
     public StatisticsResponse getStatistics() {
         log.info("Get statistics");
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
-        for (SiteEntity site : siteRepository.findAll()) {
+        for (SiteEntity site : currentGenerations()) {
             DetailedStatisticsItem detailedStatisticsItem = new DetailedStatisticsItem(site.getUrl(), site.getName(),
                     site.getStatus().name(),
                     site.getStatusTime().toInstant(OffsetDateTime.now().getOffset()).toEpochMilli(),
@@ -38,13 +44,25 @@ public class StatisticsServiceImpl implements StatisticsService {
             detailed.add(detailedStatisticsItem);
         }
 
-        TotalStatistics total = new TotalStatistics((int) siteRepository.count(),
-                (int) pageRepository.count(),
-                (int) lemmaRepository.count(),
-                !siteRepository.existsByStatusNot(SiteStatus.INDEXED));
+        TotalStatistics total = new TotalStatistics(detailed.size(),
+                detailed.stream().mapToInt(DetailedStatisticsItem::pages).sum(),
+                detailed.stream().mapToInt(DetailedStatisticsItem::lemmas).sum(),
+                detailed.stream().allMatch(item -> item.status().equals(SiteStatus.INDEXED.name())),
+                lemmaParser.getCacheHitRate());
 
         StatisticsData statistics = new StatisticsData(total, detailed);
 
         return new StatisticsResponse(statistics);
     }
+
+    /**
+     * По одному поколению на сайт: обслуживающее поиск, а если его ещё нет — последнее теневое.
+     */
+    private Collection<SiteEntity> currentGenerations() {
+        Map<String, SiteEntity> sites = new LinkedHashMap<>();
+        for (SiteEntity site : siteRepository.findAll(Sort.by("id"))) {
+            sites.merge(site.getUrl().toLowerCase(), site, (current, next) -> current.isServing() ? current : next);
+        }
+        return sites.values();
+    }
 }
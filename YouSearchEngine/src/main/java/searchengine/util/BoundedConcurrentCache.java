@@ -0,0 +1,97 @@
+package searchengine.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Кэш ограниченного размера на ConcurrentHashMap, разбитый на полосы. Значение вычисляется вне блокировок,
+ * а переполненная полоса вытесняет записи, к которым не обращались с прошлого вытеснения.
+ */
+public class BoundedConcurrentCache<K, V> {
+    private static final int SEGMENTS = 16;
+    private final Segment<K, V>[] segments;
+    private final Function<K, V> loader;
+
+    @SuppressWarnings("unchecked")
+    public BoundedConcurrentCache(int maxSize, Function<K, V> loader) {
+        this.loader = loader;
+        int capacity = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(capacity);
+        }
+    }
+
+    public V get(K key) {
+        Segment<K, V> segment = segments[Math.floorMod(key.hashCode() ^ (key.hashCode() >>> 16), SEGMENTS)];
+        Entry<V> entry = segment.entries.get(key);
+        if (entry != null) {
+            entry.used = true;
+            return entry.value;
+        }
+        V value = loader.apply(key);
+        entry = segment.entries.putIfAbsent(key, new Entry<>(value));
+        if (entry != null) {
+            return entry.value;
+        }
+        if (segment.entries.size() > segment.capacity) {
+            segment.evict();
+        }
+        return value;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.entries.size();
+        }
+        return size;
+    }
+
+    private static class Segment<K, V> {
+        private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+        private final ReentrantLock evictionLock = new ReentrantLock();
+        private final int capacity;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Освобождает четверть полосы, чтобы не вытеснять по одной записи на каждый промах.
+         */
+        void evict() {
+            if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                int target = capacity - capacity / 4;
+                while (entries.size() > target) {
+                    Iterator<Entry<V>> iterator = entries.values().iterator();
+                    while (iterator.hasNext() && entries.size() > target) {
+                        Entry<V> entry = iterator.next();
+                        if (entry.used) {
+                            entry.used = false;
+                        } else {
+                            iterator.remove();
+                        }
+                    }
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private volatile boolean used;
+
+        Entry(V value) {
+            this.value = value;
+        }
+    }
+}
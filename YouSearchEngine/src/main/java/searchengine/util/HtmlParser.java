@@ -4,19 +4,26 @@ import lombok.RequiredArgsConstructor;
 import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import searchengine.config.JsoupConnection;
 import searchengine.dto.PageInfo;
+import searchengine.dto.index.PageVersion;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
-import java.util.Random;
+import java.util.HexFormat;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -24,38 +31,96 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class HtmlParser {
 
+    private static final String ROBOTS_TXT = "/robots.txt";
     private final JsoupConnection jsoupConnection;
-    private final Random random = new Random();
 
+    /**
+     * Условный запрос по прошлой версии страницы; при ответе 304 содержимое в {@link PageInfo} не заполняется.
+     */
+    public PageInfo getPageInfo(String url, PageVersion version) throws IOException {
+        Connection connection = getConnection(url);
+        if (version != null && version.etag() != null) {
+            connection.header("If-None-Match", version.etag());
+        }
+        if (version != null && version.lastModified() != null) {
+            connection.header("If-Modified-Since", version.lastModified());
+        }
+        Connection.Response response = connection.execute();
+        PageInfo.PageInfoBuilder pageInfo = PageInfo.builder()
+                .statusCode(response.statusCode())
+                .etag(response.header("ETag"))
+                .lastModified(response.header("Last-Modified"));
+        if (response.statusCode() == HttpStatus.NOT_MODIFIED.value()) {
+            return pageInfo.build();
+        }
 
-    public PageInfo getPageInfo(String url) throws IOException, InterruptedException {
-
-        Connection.Response response = getResponse(url);
-        return new PageInfo(response.parse().html(), response.statusCode());
+        Document document = response.parse();
+        return pageInfo
+                .content(document.html())
+                .title(document.title())
+                .text(document.text())
+                .paths(getPaths(document))
+                .build();
     }
 
-
+    public String contentHash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
 
     public Set<String> getPaths(String content){
-        Document document = Jsoup.parse(content);
+        return getPaths(Jsoup.parse(content));
+    }
 
+    private Set<String> getPaths(Document document) {
         return document.select("a[href]").stream()
-                .map(element -> element.attr("href"))
-                .filter(path -> path.startsWith("/"))
+                .map(element -> normalizePath(element.attr("href")))
+                .flatMap(Optional::stream)
                 .collect(Collectors.toSet());
     }
-    private Connection.Response getResponse(String url) throws IOException, InterruptedException {
-        Thread.sleep(jsoupConnection.getTimeoutMin() + Math.abs(random.nextInt()) %
-                jsoupConnection.getTimeoutMax() - jsoupConnection.getTimeoutMin());
 
+    /**
+     * Ссылка внутри сайта без якоря и без {@code .} и {@code ..} в пути; некорректные ссылки отбрасываются.
+     */
+    private static Optional<String> normalizePath(String href) {
+        if (!href.startsWith("/") || href.startsWith("//")) {
+            return Optional.empty();
+        }
+        int fragment = href.indexOf('#');
+        try {
+            URI uri = new URI(fragment < 0 ? href : href.substring(0, fragment)).normalize();
+            return uri.getRawPath().startsWith("/") ? Optional.of(uri.toString()) : Optional.empty();
+        } catch (URISyntaxException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Optional<String> getRobotsTxt(String siteUrl) {
+        try {
+            Connection.Response response = Jsoup.connect(siteUrl + ROBOTS_TXT)
+                    .userAgent(jsoupConnection.getUserAgent())
+                    .ignoreContentType(true)
+                    .ignoreHttpErrors(true)
+                    .sslSocketFactory(socketFactory())
+                    .execute();
+            return response.statusCode() == 200 ? Optional.of(response.body()) : Optional.empty();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Connection getConnection(String url) {
         return Jsoup.connect(url)
                 .maxBodySize(0)
                 .userAgent(jsoupConnection.getUserAgent())
                 .referrer(jsoupConnection.getReferrer())
                 .header("Accept-Language", "ru")
                 .ignoreHttpErrors(true)
-                .sslSocketFactory(socketFactory())
-                .execute();
+                .sslSocketFactory(socketFactory());
     }
 
     private SSLSocketFactory socketFactory() {
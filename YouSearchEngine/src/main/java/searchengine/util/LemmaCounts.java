@@ -0,0 +1,100 @@
+package searchengine.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Число вхождений и номера слов лемм текста в массивах с открытой адресацией.
+ */
+public class LemmaCounts {
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int[] NO_POSITIONS = new int[0];
+    private String[] keys = new String[64];
+    private int[] counts = new int[64];
+    private int[][] positions = new int[64][];
+    private int size;
+
+    public void increment(String lemma, int position) {
+        if (size + 1 > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+        int slot = slot(keys, lemma);
+        if (keys[slot] == null) {
+            keys[slot] = lemma;
+            positions[slot] = new int[2];
+            size++;
+        }
+        if (counts[slot] == positions[slot].length) {
+            positions[slot] = Arrays.copyOf(positions[slot], counts[slot] * 2);
+        }
+        positions[slot][counts[slot]++] = position;
+    }
+
+    public int get(String lemma) {
+        int slot = slot(keys, lemma);
+        return keys[slot] == null ? 0 : counts[slot];
+    }
+
+    /**
+     * @return номера слов текста с леммой по возрастанию
+     */
+    public int[] positions(String lemma) {
+        int slot = slot(keys, lemma);
+        return keys[slot] == null ? NO_POSITIONS : Arrays.copyOf(positions[slot], counts[slot]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public List<String> keys() {
+        List<String> lemmas = new ArrayList<>(size);
+        for (String key : keys) {
+            if (key != null) {
+                lemmas.add(key);
+            }
+        }
+        return lemmas;
+    }
+
+    public void forEach(ObjIntConsumer<String> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        int[][] oldPositions = positions;
+        keys = new String[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        positions = new int[oldKeys.length * 2][];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+
+    private static int slot(String[] keys, String lemma) {
+        int mask = keys.length - 1;
+        int hash = lemma.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != null && keys[slot] != lemma && !keys[slot].equals(lemma)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -1,54 +1,229 @@
 package searchengine.util;
 
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.springframework.stereotype.Component;
+import searchengine.config.LemmaParserSettings;
 import searchengine.service.lemma.WordLemmas;
+import searchengine.util.analyzer.LanguageAnalyzer;
 
-import java.io.IOException;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Лемматизация текста. Язык слова определяется по алфавиту его букв,
+ * а разобранные словоформы кэшируются для каждого языка.
+ */
 @Component
 public class LemmaParser {
-    private static final String REGEX_FOR_NORMALIZE = "[^А-Яа-я]";
-    private static final Set<String> PARTICLES_NAMES = Set.of("МЕЖД", "ПРЕДЛ", "СОЮЗ", "МС");
-    private final LuceneMorphology luceneMorph;
+    private static final WordForm STOP_WORD = new WordForm(Set.of(), true);
+    private final List<LanguageAnalyzer> analyzers;
+    private final List<BoundedConcurrentCache<String, WordForm>> wordForms = new ArrayList<>();
+    private final ThreadLocal<TokenBuffers> tokenBuffers;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
-    public LemmaParser() throws IOException {
-        this.luceneMorph = new RussianLuceneMorphology();
+    public LemmaParser(List<LanguageAnalyzer> analyzers, LemmaParserSettings settings) {
+        this.analyzers = List.copyOf(analyzers);
+        for (LanguageAnalyzer analyzer : this.analyzers) {
+            wordForms.add(new BoundedConcurrentCache<>(settings.getCacheSize(), word -> analyze(analyzer, word)));
+        }
+        this.tokenBuffers = ThreadLocal.withInitial(() -> new TokenBuffers(this.analyzers.size()));
     }
 
-    public Map<String, Long> parseToLemmaWithCount(String text) {
-        return parseToWordWithLemmas(text).stream()
-                .map(WordLemmas::getLemmas)
-                .flatMap(Collection::stream)
-                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    public LemmaCounts parseToLemmaWithCount(String text) {
+        LemmaCounts counts = new LemmaCounts();
+        tokenize(text, (wordForm, index, start, end) -> {
+            if (!wordForm.stopWord()) {
+                for (String lemma : wordForm.lemmas()) {
+                    counts.increment(lemma, index);
+                }
+            }
+        });
+        return counts;
     }
 
     public List<WordLemmas> parseToWordWithLemmas(String text) {
         List<WordLemmas> wordLemmas = new ArrayList<>();
-        String[] words = text.trim().split("\\s+");
-        for (int i = 0; i < words.length; i++) {
-            String word = words[i];
-            String normalize = normalize(word);
-            if (!normalize.isBlank() && notParticle(normalize)) {
-                wordLemmas.add(new WordLemmas(word, i, new HashSet<>(luceneMorph.getNormalForms(normalize))));
+        tokenize(text, (wordForm, index, start, end) -> {
+            if (!wordForm.stopWord()) {
+                wordLemmas.add(new WordLemmas(text.substring(start, end), index, wordForm.lemmas()));
             }
-        }
+        });
         return wordLemmas;
     }
 
-    private String normalize(String word) {
-        return word.toLowerCase().replaceAll(REGEX_FOR_NORMALIZE, "");
+    /**
+     * @return доля обращений к общему кэшу словоформ, не потребовавших разбора, с момента запуска
+     */
+    public double getCacheHitRate() {
+        long total = lookups.sum();
+        return total == 0 ? 0 : 1 - (double) misses.sum() / total;
+    }
+
+    private WordForm analyze(LanguageAnalyzer analyzer, String word) {
+        misses.increment();
+        if (analyzer.isStopWord(word)) {
+            return STOP_WORD;
+        }
+        return new WordForm(Set.copyOf(analyzer.normalForms(word)), false);
+    }
+
+    /**
+     * Слова нумеруются так же, как при {@code text.trim().split("\\s+")}.
+     */
+    private void tokenize(String text, TokenConsumer consumer) {
+        TokenBuffers buffers = tokenBuffers.get();
+        buffers.clear();
+        TextWordForms[] forms = new TextWordForms[analyzers.size()];
+        int index = 0;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char symbol = i < text.length() ? text.charAt(i) : ' ';
+            if (!isSpace(symbol)) {
+                if (start < 0) {
+                    start = i;
+                }
+                char lower = Character.toLowerCase(symbol);
+                for (int language = 0; language < analyzers.size(); language++) {
+                    if (analyzers.get(language).isLetter(lower)) {
+                        buffers.append(language, lower);
+                        break;
+                    }
+                }
+                continue;
+            }
+            if (start < 0) {
+                continue;
+            }
+            for (int language = 0; language < analyzers.size(); language++) {
+                int length = buffers.lengths[language];
+                if (length > 0) {
+                    if (forms[language] == null) {
+                        forms[language] = new TextWordForms(wordForms.get(language));
+                    }
+                    consumer.accept(forms[language].get(buffers.chars[language], length), index, start, i);
+                    break;
+                }
+            }
+            buffers.clear();
+            index++;
+            start = -1;
+        }
+        for (TextWordForms textForms : forms) {
+            if (textForms != null) {
+                lookups.add(textForms.size);
+            }
+        }
+    }
+
+    private static boolean isSpace(char symbol) {
+        return symbol == ' ' || symbol == '\t' || symbol == '\n' || symbol == '\u000B' || symbol == '\f' || symbol == '\r';
+    }
+
+    private record WordForm(Set<String> lemmas, boolean stopWord) {
     }
 
-    private boolean notParticle(String word) {
-        return luceneMorph.getMorphInfo(word).stream()
-                .map(info -> info.split("\\s+"))
-                .filter(strings -> strings.length > 1)
-                .map(strings -> strings[1])
-                .noneMatch(PARTICLES_NAMES::contains);
+    /**
+     * Буферы букв текущего слова по языкам, свои у каждого потока.
+     */
+    private static class TokenBuffers {
+        private final char[][] chars;
+        private final int[] lengths;
+
+        TokenBuffers(int languages) {
+            chars = new char[languages][32];
+            lengths = new int[languages];
+        }
+
+        void append(int language, char letter) {
+            if (lengths[language] == chars[language].length) {
+                chars[language] = Arrays.copyOf(chars[language], lengths[language] * 2);
+            }
+            chars[language][lengths[language]++] = letter;
+        }
+
+        void clear() {
+            Arrays.fill(lengths, 0);
+        }
+    }
+
+    @FunctionalInterface
+    private interface TokenConsumer {
+        void accept(WordForm wordForm, int index, int start, int end);
+    }
+
+    /**
+     * Словоформы одного текста. Ищутся по содержимому буфера без создания строки.
+     */
+    private static class TextWordForms {
+        private final BoundedConcurrentCache<String, WordForm> cache;
+        private String[] words = new String[64];
+        private WordForm[] wordForms = new WordForm[64];
+        private int size;
+
+        TextWordForms(BoundedConcurrentCache<String, WordForm> cache) {
+            this.cache = cache;
+        }
+
+        WordForm get(char[] buffer, int length) {
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + buffer[i];
+            }
+            int slot = find(buffer, length, hash);
+            if (words[slot] != null) {
+                return wordForms[slot];
+            }
+
+            String word = new String(buffer, 0, length);
+            WordForm wordForm = cache.get(word);
+            if (size + 1 > words.length * 0.6f) {
+                resize();
+                slot = find(buffer, length, hash);
+            }
+            words[slot] = word;
+            wordForms[slot] = wordForm;
+            size++;
+            return wordForm;
+        }
+
+        private int find(char[] buffer, int length, int hash) {
+            int mask = words.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (words[slot] != null && !matches(words[slot], buffer, length, hash)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void resize() {
+            String[] oldWords = words;
+            WordForm[] oldWordForms = wordForms;
+            words = new String[oldWords.length * 2];
+            wordForms = new WordForm[oldWords.length * 2];
+            int mask = words.length - 1;
+            for (int i = 0; i < oldWords.length; i++) {
+                if (oldWords[i] != null) {
+                    int hash = oldWords[i].hashCode();
+                    int slot = (hash ^ (hash >>> 16)) & mask;
+                    while (words[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    words[slot] = oldWords[i];
+                    wordForms[slot] = oldWordForms[i];
+                }
+            }
+        }
+
+        private static boolean matches(String word, char[] buffer, int length, int hash) {
+            if (word.hashCode() != hash || word.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (word.charAt(i) != buffer[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 }
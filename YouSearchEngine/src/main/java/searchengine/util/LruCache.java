@@ -0,0 +1,46 @@
+package searchengine.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Потокобезопасный кэш ограниченного размера, вытесняющий давно не использованные записи.
+ * Записи старше {@code ttl} миллисекунд не возвращаются; при {@code ttl <= 0} записи не устаревают.
+ */
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final long ttl;
+    private final Map<K, Entry<V>> entries;
+
+    public LruCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > LruCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (ttl > 0 && System.currentTimeMillis() - entry.createdAt() > ttl) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value) {
+        if (maxSize > 0) {
+            entries.put(key, new Entry<>(value, System.currentTimeMillis()));
+        }
+    }
+
+    private record Entry<V>(V value, long createdAt) {
+    }
+}
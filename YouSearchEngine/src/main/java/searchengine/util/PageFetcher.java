@@ -0,0 +1,72 @@
+package searchengine.util;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.FetchMode;
+import searchengine.config.JsoupConnection;
+import searchengine.dto.PageInfo;
+import searchengine.dto.index.PageVersion;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Загрузка страниц в отдельном пуле потоков после разрешения {@link PolitenessScheduler}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PageFetcher {
+    private final HtmlParser htmlParser;
+    private final PolitenessScheduler politenessScheduler;
+    private final JsoupConnection jsoupConnection;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        if (jsoupConnection.getFetchMode() == FetchMode.VIRTUAL) {
+            executor = virtualThreadExecutor();
+        }
+        if (executor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(jsoupConnection.getFetchThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "fetcher-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public CompletableFuture<PageInfo> fetch(URI uri, PageVersion version) {
+        return politenessScheduler.acquire(uri, executor).thenApplyAsync(permit -> {
+            try {
+                return htmlParser.getPageInfo(uri.toString(), version);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not available in Java {}, fall back to a pool of {} threads",
+                    Runtime.version(), jsoupConnection.getFetchThreads());
+            return null;
+        }
+    }
+}
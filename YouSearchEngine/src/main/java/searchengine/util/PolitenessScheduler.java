@@ -0,0 +1,131 @@
+package searchengine.util;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.JsoupConnection;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Ограничение частоты запросов к каждому хосту по алгоритму token bucket с учётом Crawl-delay.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PolitenessScheduler {
+    private static final long NANOS_IN_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private final JsoupConnection jsoupConnection;
+    private final HtmlParser htmlParser;
+    private final Map<String, CompletableFuture<TokenBucket>> buckets = new ConcurrentHashMap<>();
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "politeness-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    public CompletableFuture<Void> acquire(URI uri, Executor executor) {
+        String host = uri.getScheme() + "://" + uri.getHost();
+        return buckets.computeIfAbsent(host, key -> CompletableFuture.supplyAsync(() -> createBucket(key), executor))
+                .thenCompose(bucket -> delay(bucket.reserve()));
+    }
+
+    private CompletableFuture<Void> delay(long nanos) {
+        if (nanos <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        timer.schedule(() -> permit.complete(null), nanos, TimeUnit.NANOSECONDS);
+        return permit;
+    }
+
+    private TokenBucket createBucket(String host) {
+        double requestsPerSecond = jsoupConnection.getRequestsPerSecond();
+        if (jsoupConnection.isRespectCrawlDelay()) {
+            double crawlDelay = htmlParser.getRobotsTxt(host).map(this::parseCrawlDelay).orElse(0.0);
+            if (crawlDelay > 0) {
+                requestsPerSecond = Math.min(requestsPerSecond, 1 / crawlDelay);
+                log.info("Crawl-delay for {}: {} s.", host, crawlDelay);
+            }
+        }
+        return new TokenBucket(requestsPerSecond, Math.max(1, jsoupConnection.getBurst()));
+    }
+
+    /**
+     * Значение Crawl-delay из группы правил для «*» или для нашего User-agent.
+     */
+    private double parseCrawlDelay(String robotsTxt) {
+        String userAgent = jsoupConnection.getUserAgent() == null ? "" : jsoupConnection.getUserAgent().toLowerCase();
+        boolean applies = false;
+        boolean groupStarted = false;
+        double crawlDelay = 0;
+        for (String line : robotsTxt.split("\\R")) {
+            int comment = line.indexOf('#');
+            String rule = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            int colon = rule.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = rule.substring(0, colon).trim().toLowerCase();
+            String value = rule.substring(colon + 1).trim();
+            if (name.equals("user-agent")) {
+                if (groupStarted) {
+                    applies = false;
+                    groupStarted = false;
+                }
+                String agent = value.toLowerCase();
+                applies |= agent.equals("*") || (!agent.isEmpty() && userAgent.contains(agent));
+            } else {
+                groupStarted = true;
+                if (applies && name.equals("crawl-delay")) {
+                    try {
+                        crawlDelay = Math.max(crawlDelay, Double.parseDouble(value));
+                    } catch (NumberFormatException e) {
+                        log.warn("Wrong Crawl-delay: {}", value);
+                    }
+                }
+            }
+        }
+        return crawlDelay;
+    }
+
+    private static class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long updated = System.nanoTime();
+
+        TokenBucket(double requestsPerSecond, int burst) {
+            this.tokensPerNano = requestsPerSecond / NANOS_IN_SECOND;
+            this.capacity = burst;
+            this.tokens = burst;
+        }
+
+        /**
+         * Резервирует один токен.
+         *
+         * @return через сколько наносекунд можно выполнить запрос
+         */
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - updated) * tokensPerNano);
+            updated = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / tokensPerNano);
+        }
+    }
+}
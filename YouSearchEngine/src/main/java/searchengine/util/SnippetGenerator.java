@@ -4,70 +4,179 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import searchengine.service.lemma.WordLemmas;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+/**
+ * Сниппет из фрагментов текста страницы с выделенными словами запроса.
+ */
 @Component
 @RequiredArgsConstructor
 public class SnippetGenerator {
-    private static final int SYMBOLS_IN_SNIPPET = 180;
+    private static final int FRAGMENT_WORDS = 24;
+    private static final int MAX_FRAGMENTS = 3;
+    private static final String FRAGMENT_SEPARATOR = " ... ";
     private final LemmaParser lemmaParser;
-    private final HtmlParser htmlParser;
 
-    public String generateSnippet(String query, String content) {
-        List<WordLemmas> queryLemmas = lemmaParser.parseToWordWithLemmas(query);
-        List<WordLemmas> wordLemmas = lemmaParser.parseToWordWithLemmas(htmlParser.htmlToText(content));
-        List<WordLemmas> pageCommonSequence = longestCS(queryLemmas, wordLemmas);
-        return paddingSnippet(content, pageCommonSequence);
+    /**
+     * @param queryWords леммы каждого слова запроса
+     * @param positions  номера слов текста по леммам запроса; пустые, если позиций в индексе нет
+     */
+    public String generateSnippet(List<List<String>> queryWords, String text, Map<String, int[]> positions) {
+        String[] words = text.trim().split("\\s+");
+        Map<String, Integer> queryBits = queryBits(queryWords);
+        int[] masks = new int[words.length];
+        if (positions.values().stream().anyMatch(lemmaPositions -> lemmaPositions.length > 0)) {
+            positions.forEach((lemma, lemmaPositions) -> {
+                int bits = queryBits.getOrDefault(lemma, 0);
+                for (int position : lemmaPositions) {
+                    if (position < masks.length) {
+                        masks[position] |= bits;
+                    }
+                }
+            });
+        } else {
+            for (WordLemmas word : lemmaParser.parseToWordWithLemmas(text)) {
+                int mask = 0;
+                for (String lemma : word.getLemmas()) {
+                    mask |= queryBits.getOrDefault(lemma, 0);
+                }
+                masks[word.getIndex()] = mask;
+            }
+        }
+
+        List<int[]> fragments = selectFragments(masks);
+        fragments.sort(Comparator.comparingInt(fragment -> fragment[0]));
+        List<String> snippets = new ArrayList<>();
+        for (int[] fragment : fragments) {
+            snippets.add(highlight(words, masks, fragment[0], fragment[1]));
+        }
+        return String.join(FRAGMENT_SEPARATOR, snippets);
     }
 
-    private String paddingSnippet(String content, List<WordLemmas> pageCommonSequence) {
-        String[] split = htmlParser.htmlToText(content).trim().split("\\s+");
-        int startIndex = pageCommonSequence.get(0).getIndex();
-        int endIndex = pageCommonSequence.get(pageCommonSequence.size() - 1).getIndex() + 1;
-        int length = 0;
-        int leftIndex = startIndex;
-        int rightIndex = endIndex;
-        while (length < SYMBOLS_IN_SNIPPET) {
-            if (leftIndex > 0) {
-                leftIndex--;
-                length += split[leftIndex].length() + 1;
+    /**
+     * Слова запроса с общей леммой получают один бит; учитываются первые 32 разных слова.
+     */
+    private static Map<String, Integer> queryBits(List<List<String>> queryWords) {
+        Map<String, Integer> queryBits = new HashMap<>();
+        int nextBit = 0;
+        for (List<String> lemmas : queryWords) {
+            int bit = lemmas.stream()
+                    .map(queryBits::get)
+                    .filter(Objects::nonNull)
+                    .findFirst()
+                    .orElse(0);
+            if (bit == 0) {
+                if (nextBit == Integer.SIZE) {
+                    continue;
+                }
+                bit = 1 << nextBit++;
             }
-            if (rightIndex < split.length) {
-                length += split[rightIndex].length() + 1;
-                rightIndex++;
+            for (String lemma : lemmas) {
+                queryBits.merge(lemma, bit, (a, b) -> a | b);
             }
-            if (startIndex == 0 && endIndex == split.length) {
+        }
+        return queryBits;
+    }
+
+    private List<int[]> selectFragments(int[] masks) {
+        List<int[]> fragments = new ArrayList<>();
+        int covered = 0;
+        while (fragments.size() < MAX_FRAGMENTS) {
+            int[] fragment = bestWindow(masks, covered, fragments);
+            if (fragment == null) {
                 break;
             }
+            fragments.add(fragment);
+            for (int i = fragment[0]; i < fragment[1]; i++) {
+                covered |= masks[i];
+            }
+        }
+        if (fragments.isEmpty()) {
+            fragments.add(new int[]{0, Math.min(FRAGMENT_WORDS, masks.length)});
+        }
+        return fragments;
+    }
+
+    /**
+     * @return границы [начало, конец) лучшего окна, не пересекающегося с выбранными фрагментами,
+     * или null, если ни одно окно не содержит новых слов запроса
+     */
+    private int[] bestWindow(int[] masks, int covered, List<int[]> fragments) {
+        int width = Math.min(FRAGMENT_WORDS, masks.length);
+        int[] counts = new int[Integer.SIZE];
+        int distinct = 0;
+        int matches = 0;
+        long bestScore = 0;
+        int bestStart = -1;
+        for (int end = 0; end < masks.length; end++) {
+            int added = masks[end] & ~covered;
+            distinct += update(counts, added, 1);
+            matches += added != 0 ? 1 : 0;
+            int start = end - width + 1;
+            if (start > 0) {
+                int removed = masks[start - 1] & ~covered;
+                distinct += update(counts, removed, -1);
+                matches -= removed != 0 ? 1 : 0;
+            }
+            if (start < 0 || distinct == 0 || overlaps(start, start + width, fragments)) {
+                continue;
+            }
+            long score = (long) distinct * (width + 1) + matches;
+            if (score > bestScore) {
+                bestScore = score;
+                bestStart = start;
+            }
         }
-        return (String.join(" ", Arrays.asList(split).subList(leftIndex, startIndex)) + " <b>" +
-                String.join(" ", Arrays.asList(split).subList(startIndex, endIndex)) + "</b> " +
-                String.join(" ", Arrays.asList(split).subList(endIndex, rightIndex))).trim();
+        return bestStart < 0 ? null : new int[]{bestStart, bestStart + width};
     }
 
-    private List<WordLemmas> longestCS(List<WordLemmas> query, List<WordLemmas> page) {
-        int[][] matrix = new int[query.size()][];
+    /**
+     * @return на сколько изменилось число разных слов запроса в окне
+     */
+    private static int update(int[] counts, int mask, int delta) {
+        int changed = 0;
+        while (mask != 0) {
+            int bit = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            counts[bit] += delta;
+            if (delta > 0 && counts[bit] == 1) {
+                changed++;
+            } else if (delta < 0 && counts[bit] == 0) {
+                changed--;
+            }
+        }
+        return changed;
+    }
 
-        int maxLength = 0;
-        int maxJ = 0;
+    private static boolean overlaps(int start, int end, List<int[]> fragments) {
+        for (int[] fragment : fragments) {
+            if (start < fragment[1] && fragment[0] < end) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        for (int i = 0; i < matrix.length; i++) {
-            matrix[i] = new int[page.size()];
-            for (int j = 0; j < matrix[i].length; j++) {
-                if (query.get(i).equals(page.get(j))) {
-                    if (i != 0 && j != 0) {
-                        matrix[i][j] = matrix[i - 1][j - 1] + 1;
-                    } else {
-                        matrix[i][j] = 1;
-                    }
-                    if (matrix[i][j] > maxLength) {
-                        maxLength = matrix[i][j];
-                        maxJ = j;
-                    }
-                }
+    private static String highlight(String[] words, int[] masks, int start, int end) {
+        StringBuilder snippet = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            if (i > start) {
+                snippet.append(' ');
+            }
+            boolean match = masks[i] != 0;
+            if (match && (i == start || masks[i - 1] == 0)) {
+                snippet.append("<b>");
+            }
+            snippet.append(words[i]);
+            if (match && (i == end - 1 || masks[i + 1] == 0)) {
+                snippet.append("</b>");
             }
         }
-        return page.subList(maxJ - maxLength + 1, maxJ + 1);
+        return snippet.toString();
     }
 }
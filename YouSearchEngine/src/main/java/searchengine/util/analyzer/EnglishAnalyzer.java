@@ -0,0 +1,19 @@
+package searchengine.util.analyzer;
+
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import searchengine.config.LemmaParserSettings;
+
+import java.io.IOException;
+
+@Component
+@Order(2)
+@ConditionalOnProperty(prefix = "lemma-parser.english", name = "enabled", matchIfMissing = true)
+public class EnglishAnalyzer extends MorphologyAnalyzer {
+
+    public EnglishAnalyzer(LemmaParserSettings settings) throws IOException {
+        super(new EnglishLuceneMorphology(), 'a', 'z', settings.getEnglish());
+    }
+}
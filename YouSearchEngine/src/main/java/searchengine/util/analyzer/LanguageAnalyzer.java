@@ -0,0 +1,26 @@
+package searchengine.util.analyzer;
+
+import java.util.Collection;
+
+/**
+ * Морфология одного языка. Язык слова определяется по алфавиту: анализатор принимает
+ * только буквы своего алфавита, и до морфологии доходят лишь слова из этих букв.
+ */
+public interface LanguageAnalyzer {
+
+    /**
+     * @param letter символ в нижнем регистре
+     */
+    boolean isLetter(char letter);
+
+    /**
+     * @param word слово в нижнем регистре только из букв этого анализатора
+     */
+    Collection<String> normalForms(String word);
+
+    /**
+     * @param word слово в нижнем регистре только из букв этого анализатора
+     * @return true, если слово не нужно индексировать
+     */
+    boolean isStopWord(String word);
+}
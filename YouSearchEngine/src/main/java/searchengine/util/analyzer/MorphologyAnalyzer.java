@@ -0,0 +1,44 @@
+package searchengine.util.analyzer;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import searchengine.config.LemmaParserSettings;
+
+import java.util.Collection;
+
+/**
+ * Анализатор на основе словаря LuceneMorphology; стоп-слова задаются в настройках
+ * списком слов и частей речи.
+ */
+public abstract class MorphologyAnalyzer implements LanguageAnalyzer {
+    private final LuceneMorphology luceneMorph;
+    private final char firstLetter;
+    private final char lastLetter;
+    private final LemmaParserSettings.Language settings;
+
+    protected MorphologyAnalyzer(LuceneMorphology luceneMorph, char firstLetter, char lastLetter,
+                                 LemmaParserSettings.Language settings) {
+        this.luceneMorph = luceneMorph;
+        this.firstLetter = firstLetter;
+        this.lastLetter = lastLetter;
+        this.settings = settings;
+    }
+
+    @Override
+    public boolean isLetter(char letter) {
+        return letter >= firstLetter && letter <= lastLetter;
+    }
+
+    @Override
+    public Collection<String> normalForms(String word) {
+        return luceneMorph.getNormalForms(word);
+    }
+
+    @Override
+    public boolean isStopWord(String word) {
+        return settings.getStopWords().contains(word) || luceneMorph.getMorphInfo(word).stream()
+                .map(info -> info.split("\\s+"))
+                .filter(strings -> strings.length > 1)
+                .map(strings -> strings[1])
+                .anyMatch(settings.getStopPartsOfSpeech()::contains);
+    }
+}
@@ -0,0 +1,19 @@
+package searchengine.util.analyzer;
+
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import searchengine.config.LemmaParserSettings;
+
+import java.io.IOException;
+
+@Component
+@Order(1)
+@ConditionalOnProperty(prefix = "lemma-parser.russian", name = "enabled", matchIfMissing = true)
+public class RussianAnalyzer extends MorphologyAnalyzer {
+
+    public RussianAnalyzer(LemmaParserSettings settings) throws IOException {
+        super(new RussianLuceneMorphology(), 'а', 'я', settings.getRussian());
+    }
+}
@@ -0,0 +1,142 @@
+package searchengine.service.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageIteratorTest {
+    private static final int CAT = 1;
+    private static final int DOG = 2;
+    private static final int BIRD = 3;
+
+    @Test
+    void conjunctionFindsCommonPages() {
+        PageIterator iterator = new ConjunctionIterator(List.of(cursor(2, 4, 6, 300, 301),
+                cursor(1, 2, 3, 6, 7, 301), cursor(0, 2, 6, 8, 301, 302)));
+
+        assertEquals(List.of(2, 6, 301), read(iterator));
+    }
+
+    @Test
+    void conjunctionAdvancesPastSkippedPages() {
+        PageIterator iterator = new ConjunctionIterator(List.of(cursor(2, 6, 300, 301), range(0, 1000)));
+
+        assertEquals(300, iterator.advance(7));
+        assertEquals(300, iterator.advance(300));
+        assertEquals(301, iterator.next());
+        assertEquals(PageIterator.NO_MORE_PAGES, iterator.next());
+    }
+
+    @Test
+    void disjunctionMergesPagesWithoutDuplicates() {
+        PageIterator iterator = new DisjunctionIterator(List.of(cursor(1, 5, 9), cursor(2, 5, 400), cursor()));
+
+        assertEquals(List.of(1, 2, 5, 9, 400), read(iterator));
+        assertEquals(5, new DisjunctionIterator(List.of(cursor(1, 5, 9), cursor(2, 5, 400))).advance(3));
+    }
+
+    @Test
+    void exclusionSkipsExcludedPages() {
+        PageIterator iterator = new ExclusionIterator(range(0, 400), range(1, 399));
+
+        assertEquals(List.of(0, 399), read(iterator));
+        assertEquals(List.of(1, 3), read(new ExclusionIterator(cursor(1, 2, 3), cursor(2))));
+    }
+
+    @Test
+    void termKeepsCommonPositionsOfItsLemmas() {
+        Postings left = new Postings();
+        left.add(1, 3, Positions.encode(new int[]{1, 5, 9}));
+        Postings right = new Postings();
+        right.add(1, 2, Positions.encode(new int[]{5, 9}));
+        TermIterator term = new TermIterator(List.of(right.cursor(), left.cursor()));
+
+        assertEquals(1, term.next());
+        assertArrayEquals(new int[]{5, 9}, term.positions());
+    }
+
+    @Test
+    void phraseRequiresWordsInQueryOrder() {
+        SiteIndex index = index();
+
+        assertEquals(Set.of(1), index.search(new IndexQuery.Phrase(List.of(term(CAT), term(DOG)), List.of(0, 1)),
+                1.2, 0.75, 0).keySet());
+        assertEquals(Set.of(2), index.search(new IndexQuery.Phrase(List.of(term(CAT), term(DOG)), List.of(0, 2)),
+                1.2, 0.75, 0).keySet());
+    }
+
+    @Test
+    void nearMatchesWordsWithinDistanceInAnyOrder() {
+        SiteIndex index = index();
+
+        assertEquals(Set.of(1, 3), index.search(new IndexQuery.Near(term(DOG), term(CAT), 1), 1.2, 0.75, 0)
+                .keySet());
+        assertEquals(Set.of(1, 2, 3), index.search(new IndexQuery.Near(term(CAT), term(DOG), 2), 1.2, 0.75, 0)
+                .keySet());
+    }
+
+    @Test
+    void andOrNotCombineClauses() {
+        SiteIndex index = index();
+        IndexQuery catOrBird = new IndexQuery.Or(List.of(term(CAT), term(BIRD)));
+
+        assertEquals(Set.of(1, 2, 3, 4), index.search(catOrBird, 1.2, 0.75, 0).keySet());
+        assertEquals(Set.of(4), index.search(new IndexQuery.And(List.of(catOrBird,
+                new IndexQuery.Not(term(DOG)))), 1.2, 0.75, 0).keySet());
+        assertEquals(Set.of(), index.search(new IndexQuery.And(List.of(new IndexQuery.Not(term(DOG)))),
+                1.2, 0.75, 0).keySet());
+    }
+
+    @Test
+    void closerWordsRankHigher() {
+        SiteIndex index = new SiteIndex();
+        index.addPage(1, Map.of(CAT, new int[]{0}, DOG, new int[]{1}));
+        index.addPage(2, Map.of(CAT, new int[]{0}, DOG, new int[]{5}));
+
+        Map<Integer, Double> ranks = index.search(new IndexQuery.And(List.of(term(CAT), term(DOG))), 1.2, 0.75, 1);
+
+        assertTrue(ranks.get(1) > ranks.get(2));
+    }
+
+    private static SiteIndex index() {
+        SiteIndex index = new SiteIndex();
+        index.addPage(1, Map.of(CAT, new int[]{0}, DOG, new int[]{1}));
+        index.addPage(2, Map.of(CAT, new int[]{0}, DOG, new int[]{2}));
+        index.addPage(3, Map.of(DOG, new int[]{4}, CAT, new int[]{5}));
+        index.addPage(4, Map.of(BIRD, new int[]{0}));
+        return index;
+    }
+
+    private static IndexQuery.Term term(int lemmaId) {
+        return new IndexQuery.Term(List.of(lemmaId));
+    }
+
+    private static PostingCursor cursor(int... pages) {
+        Postings postings = new Postings();
+        for (int page : pages) {
+            postings.add(page, 1, Positions.NONE);
+        }
+        return postings.cursor();
+    }
+
+    private static PostingCursor range(int from, int to) {
+        Postings postings = new Postings();
+        for (int page = from; page < to; page++) {
+            postings.add(page, 1, Positions.NONE);
+        }
+        return postings.cursor();
+    }
+
+    private static List<Integer> read(PageIterator iterator) {
+        List<Integer> pages = new ArrayList<>();
+        for (int pageId = iterator.next(); pageId != PageIterator.NO_MORE_PAGES; pageId = iterator.next()) {
+            pages.add(pageId);
+        }
+        return pages;
+    }
+}
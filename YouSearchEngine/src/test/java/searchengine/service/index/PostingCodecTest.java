@@ -0,0 +1,170 @@
+package searchengine.service.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostingCodecTest {
+
+    @Test
+    void positionsRoundTripWithMultiByteGaps() {
+        int[] positions = {0, 1, 127, 128, 16_511, 16_512, 2_113_663, Integer.MAX_VALUE};
+
+        byte[] encoded = Positions.encode(positions);
+
+        assertArrayEquals(positions, Positions.decode(encoded));
+        assertArrayEquals(positions, Positions.decode(ByteBuffer.wrap(encoded), 0, encoded.length));
+        assertSame(Positions.NONE, Positions.encode(new int[0]));
+        assertEquals(0, Positions.decode(Positions.NONE).length);
+    }
+
+    @Test
+    void blockRoundTripKeepsPagesRanksAndPositions() {
+        int count = PostingCodec.MAX_BLOCK_SIZE;
+        int[] pages = new int[count];
+        float[] ranks = new float[count];
+        byte[][] positions = new byte[count][];
+        int[][] expectedPositions = new int[count][];
+        Random random = new Random(1);
+        int pageId = 5;
+        for (int i = 0; i < count; i++) {
+            pageId += 1 + (i % 10 == 0 ? 100_000 : random.nextInt(200));
+            pages[i] = pageId;
+            ranks[i] = 1 + random.nextInt(300);
+            expectedPositions[i] = i % 7 == 0 ? new int[0] : increasing(random, (int) ranks[i]);
+            positions[i] = Positions.encode(expectedPositions[i]);
+        }
+
+        byte[] data = PostingCodec.encode(pages, ranks, positions, 0, count);
+        int[] decodedPages = new int[count];
+        float[] decodedRanks = new float[count];
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        PostingCodec.decode(data, pages[0], count, decodedPages, decodedRanks, offsets, lengths);
+
+        assertArrayEquals(pages, decodedPages);
+        assertArrayEquals(ranks, decodedRanks);
+        for (int i = 0; i < count; i++) {
+            assertArrayEquals(expectedPositions[i], Positions.decode(data, offsets[i], lengths[i]));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(data.length + 3);
+        buffer.position(3);
+        buffer.put(data);
+        int[] bufferPages = new int[count];
+        PostingCodec.decode(buffer, 3, pages[0], count, bufferPages, new float[count], new int[count],
+                new int[count]);
+        assertArrayEquals(pages, bufferPages);
+
+        assertTrue(PostingCodec.contains(data, pages[0], count, pages[count - 1]));
+        assertTrue(PostingCodec.contains(data, pages[0], count, pages[count / 2]));
+        assertFalse(PostingCodec.contains(data, pages[0], count, pages[count / 2] + 1));
+        assertFalse(PostingCodec.contains(data, pages[0], count, pages[count - 1] + 1));
+    }
+
+    @Test
+    void cursorAdvancesAcrossBlockBoundaries() {
+        int count = PostingCodec.BLOCK_SIZE * 3 + 17;
+        Postings postings = new Postings();
+        for (int i = 0; i < count; i++) {
+            postings.add(i * 3, i % 5 + 1, Positions.encode(new int[]{i}));
+        }
+
+        PostingCursor cursor = postings.cursor();
+        assertEquals(-1, cursor.pageId());
+        assertEquals(0, cursor.next());
+        assertEquals(PostingCodec.BLOCK_SIZE * 3, cursor.advance(PostingCodec.BLOCK_SIZE * 3 - 1));
+        assertEquals(PostingCodec.BLOCK_SIZE * 3, cursor.advance(PostingCodec.BLOCK_SIZE * 3));
+        assertEquals(PostingCodec.BLOCK_SIZE * 3 + 3, cursor.next());
+        assertEquals((PostingCodec.BLOCK_SIZE + 1) % 5 + 1, cursor.rank());
+        assertEquals((PostingCodec.BLOCK_SIZE + 1) * 3, cursor.advance(PostingCodec.BLOCK_SIZE * 3 + 1));
+        assertArrayEquals(new int[]{PostingCodec.BLOCK_SIZE + 1}, cursor.positions());
+        assertEquals((count - 1) * 3, cursor.advance((count - 1) * 3));
+        assertEquals(PageIterator.NO_MORE_PAGES, cursor.next());
+        assertEquals(PageIterator.NO_MORE_PAGES, cursor.advance(1));
+        assertEquals(PageIterator.NO_MORE_PAGES, postings.cursor().advance(count * 3));
+    }
+
+    @Test
+    void postingsStaySortedAfterChangesInsideCompressedBlocks() {
+        Postings postings = new Postings();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 2_000; i++) {
+            int pageId = random.nextInt(1_500);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(pageId) != null, postings.remove(pageId));
+            } else {
+                int rank = 1 + random.nextInt(9);
+                postings.add(pageId, rank, Positions.encode(new int[]{rank}));
+                expected.put(pageId, rank);
+            }
+        }
+
+        assertEquals(expected.size(), postings.size());
+        assertEquals(expected, read(postings));
+    }
+
+    @Test
+    void segmentRoundTripMatchesPostings(@TempDir Path directory) throws IOException {
+        Map<Integer, Postings> postings = new TreeMap<>();
+        Map<Integer, Float> pageLengths = new TreeMap<>();
+        for (int pageId = 1; pageId <= 700; pageId++) {
+            for (int lemmaId = 1; lemmaId <= 3; lemmaId++) {
+                if (pageId % lemmaId == 0) {
+                    postings.computeIfAbsent(lemmaId, key -> new Postings())
+                            .add(pageId, lemmaId, Positions.encode(new int[]{lemmaId, pageId}));
+                    pageLengths.merge(pageId, (float) lemmaId, Float::sum);
+                }
+            }
+        }
+        Path file = directory.resolve("site-1.seg");
+
+        Segment.write(file, 1, postings, pageLengths, 1234.5);
+        Segment segment = Segment.open(file, 1);
+
+        assertEquals(3, segment.lemmaCount());
+        assertEquals(700, segment.pageCount());
+        assertEquals(1234.5, segment.totalLength());
+        assertEquals(6f, segment.pageLength(6));
+        assertEquals(0, segment.pageLength(701));
+        assertNull(segment.postings(4));
+        for (int lemmaId = 1; lemmaId <= 3; lemmaId++) {
+            assertEquals(postings.get(lemmaId).size(), segment.postings(lemmaId).size());
+            assertEquals(read(postings.get(lemmaId)), read(segment.postings(lemmaId)));
+        }
+        PostingCursor cursor = segment.postings(3).cursor();
+        assertEquals(603, cursor.advance(601));
+        assertArrayEquals(new int[]{3, 603}, cursor.positions());
+        assertThrows(IOException.class, () -> Segment.open(file, 2));
+    }
+
+    private static Map<Integer, Integer> read(PostingList list) {
+        Map<Integer, Integer> pages = new TreeMap<>();
+        PostingCursor cursor = list.cursor();
+        while (cursor.next() != PageIterator.NO_MORE_PAGES) {
+            pages.put(cursor.pageId(), (int) cursor.rank());
+        }
+        return pages;
+    }
+
+    private static int[] increasing(Random random, int count) {
+        List<Integer> positions = new ArrayList<>();
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            position += 1 + random.nextInt(40_000);
+            positions.add(position);
+        }
+        return positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
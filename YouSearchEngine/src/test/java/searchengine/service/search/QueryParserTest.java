@@ -0,0 +1,126 @@
+package searchengine.service.search;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.LemmaParserSettings;
+import searchengine.exceptions.BadRequestException;
+import searchengine.util.LemmaParser;
+import searchengine.util.analyzer.LanguageAnalyzer;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryParserTest {
+    private final QueryParser parser = new QueryParser(new LemmaParser(List.of(new LatinAnalyzer()),
+            new LemmaParserSettings()));
+
+    @Test
+    void wordsSeparatedBySpacesAreAllRequired() {
+        assertEquals(all(word("cat"), word("dog")), parse("Cat  dog"));
+    }
+
+    @Test
+    void stopWordsAreDropped() {
+        assertEquals(all(word("cat")), parse("the cat"));
+        assertEquals(all(), parse("the"));
+    }
+
+    @Test
+    void phraseKeepsOffsetsOfStopWords() {
+        assertEquals(all(new SearchQuery.Phrase(List.of(word("cat"), word("dog")), List.of(0, 2))),
+                parse("\"cat the dog\""));
+        assertEquals(all(word("cat")), parse("\"cat"));
+    }
+
+    @Test
+    void nearTakesDistanceAndBindsTighterThanOr() {
+        assertEquals(all(new SearchQuery.Any(List.of(new SearchQuery.Near(word("cat"), word("dog"), 3),
+                word("bird")))), parse("cat NEAR/3 dog OR bird"));
+        assertEquals(all(new SearchQuery.Near(word("cat"), word("dog"), 10)), parse("cat NEAR dog"));
+        assertEquals(all(new SearchQuery.All(List.of(new SearchQuery.Near(word("cat"), word("dog"), 1),
+                new SearchQuery.Near(word("dog"), word("bird"), 2)))), parse("cat NEAR/1 dog NEAR/2 bird"));
+    }
+
+    @Test
+    void orBindsTighterThanSpace() {
+        assertEquals(all(word("cat"), new SearchQuery.Any(List.of(word("dog"), word("bird")))),
+                parse("cat dog OR bird"));
+    }
+
+    @Test
+    void negationAndGroups() {
+        assertEquals(all(word("cat"), new SearchQuery.Not(new SearchQuery.All(List.of(word("dog"), word("bird"))))),
+                parse("cat -(dog bird)"));
+        assertEquals(all(word("cat"), new SearchQuery.Not(word("dog"))), parse("cat NOT dog"));
+        assertEquals(all(word("cat")), parse("cat NOT NOT"));
+        assertEquals(all(word("cat"), word("dog")), parse("cat --dog"));
+        assertEquals(all(new SearchQuery.Any(List.of(word("cat"), word("dog"))), new SearchQuery.Not(word("bird"))),
+                parse("(cat OR dog) -bird"));
+    }
+
+    @Test
+    void negationInsideOrIsRejected() {
+        assertThrows(BadRequestException.class, () -> parser.parse("cat OR -bird OR dog"));
+        assertThrows(BadRequestException.class, () -> parser.parse("NOT cat OR dog"));
+        assertThrows(BadRequestException.class, () -> parser.parse("cat OR NOT (dog bird)"));
+    }
+
+    @Test
+    void unbalancedParenthesesAreIgnored() {
+        assertEquals(all(word("cat"), word("dog")), parse(") cat (dog"));
+        assertEquals(all(new SearchQuery.All(List.of(word("cat"), word("dog"))), word("bird")),
+                parse("((cat dog)) bird)"));
+    }
+
+    @Test
+    void siteFiltersAreCollected() {
+        QueryParser.Result result = parser.parse("cat site:example.com SITE:news.example.com");
+
+        assertEquals(all(word("cat")), result.query());
+        assertEquals(List.of("example.com", "news.example.com"), result.sites());
+        assertTrue(result.excludedSites().isEmpty());
+    }
+
+    @Test
+    void negatedSiteFiltersExcludeSites() {
+        QueryParser.Result result = parser.parse("cat -site:other.org NOT site:spam.example.com dog");
+
+        assertEquals(all(word("cat"), word("dog")), result.query());
+        assertTrue(result.sites().isEmpty());
+        assertEquals(List.of("other.org", "spam.example.com"), result.excludedSites());
+    }
+
+    private SearchQuery parse(String query) {
+        QueryParser.Result result = parser.parse(query);
+        assertTrue(result.sites().isEmpty());
+        assertTrue(result.excludedSites().isEmpty());
+        return result.query();
+    }
+
+    private static SearchQuery.All all(SearchQuery... clauses) {
+        return new SearchQuery.All(List.of(clauses));
+    }
+
+    private static SearchQuery.Word word(String lemma) {
+        return new SearchQuery.Word(List.of(lemma));
+    }
+
+    private static class LatinAnalyzer implements LanguageAnalyzer {
+
+        @Override
+        public boolean isLetter(char letter) {
+            return letter >= 'a' && letter <= 'z';
+        }
+
+        @Override
+        public Collection<String> normalForms(String word) {
+            return List.of(word);
+        }
+
+        @Override
+        public boolean isStopWord(String word) {
+            return word.equals("the");
+        }
+    }
+}
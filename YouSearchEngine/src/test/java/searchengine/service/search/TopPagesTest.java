@@ -0,0 +1,62 @@
+package searchengine.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopPagesTest {
+
+    @Test
+    void keepsPagesWithHighestRanksInDescendingOrder() {
+        TopPages top = new TopPages(3);
+        top.add(1, 0.5);
+        top.add(2, 3.0);
+        top.add(3, 1.0);
+        top.add(4, 2.0);
+        top.add(5, 0.1);
+
+        assertEquals(List.of(new TopPages.RankedPage(2, 3.0), new TopPages.RankedPage(4, 2.0),
+                new TopPages.RankedPage(3, 1.0)), top.toList());
+    }
+
+    @Test
+    void prefersSmallerPageIdOnEqualRanks() {
+        TopPages top = new TopPages(2);
+        top.add(7, 1.0);
+        top.add(3, 1.0);
+        top.add(5, 1.0);
+
+        assertEquals(List.of(3, 5), top.toList().stream().map(TopPages.RankedPage::pageId).toList());
+    }
+
+    @Test
+    void returnsAllPagesWhenFewerThanCapacity() {
+        TopPages top = new TopPages(1_000);
+        top.add(1, 1.0);
+        top.add(2, 2.0);
+
+        assertEquals(List.of(2, 1), top.toList().stream().map(TopPages.RankedPage::pageId).toList());
+        assertTrue(new TopPages(0).toList().isEmpty());
+    }
+
+    @Test
+    void matchesFullSort() {
+        Random random = new Random(3);
+        List<TopPages.RankedPage> pages = new ArrayList<>();
+        TopPages top = new TopPages(50);
+        for (int pageId = 0; pageId < 5_000; pageId++) {
+            double rank = random.nextInt(300) / 10.0;
+            pages.add(new TopPages.RankedPage(pageId, rank));
+            top.add(pageId, rank);
+        }
+        pages.sort(Comparator.comparingDouble(TopPages.RankedPage::rank).reversed()
+                .thenComparingInt(TopPages.RankedPage::pageId));
+
+        assertEquals(pages.subList(0, 50), top.toList());
+    }
+}
@@ -0,0 +1,44 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedConcurrentCacheTest {
+
+    @Test
+    void loadsMissingValuesOnce() {
+        AtomicInteger loads = new AtomicInteger();
+        BoundedConcurrentCache<String, Integer> cache = new BoundedConcurrentCache<>(100, key -> {
+            loads.incrementAndGet();
+            return key.length();
+        });
+
+        assertEquals(3, cache.get("cat"));
+        assertEquals(3, cache.get("cat"));
+        assertEquals(5, cache.get("horse"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void staysWithinMaxSizeAndKeepsRecentlyUsedEntries() {
+        BoundedConcurrentCache<Integer, Integer> cache = new BoundedConcurrentCache<>(160, key -> key);
+        AtomicInteger loads = new AtomicInteger();
+        BoundedConcurrentCache<Integer, Integer> counted = new BoundedConcurrentCache<>(160, key -> {
+            loads.incrementAndGet();
+            return key;
+        });
+
+        for (int key = 0; key < 10_000; key++) {
+            cache.get(key);
+            counted.get(key);
+            counted.get(0);
+        }
+
+        assertTrue(cache.size() <= 160);
+        assertTrue(counted.size() <= 160);
+        assertEquals(10_000, loads.get());
+    }
+}
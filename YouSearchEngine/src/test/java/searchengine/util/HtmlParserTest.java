@@ -0,0 +1,101 @@
+package searchengine.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.JsoupConnection;
+import searchengine.dto.PageInfo;
+import searchengine.dto.index.PageVersion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HtmlParserTest {
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+    private static final String HTML = "<html><head><title>Кошки</title></head><body><p>Про кошек и собак</p>"
+            + "<a href=\"/cats\">cats</a> <a href=\"/dogs/../birds#top\">birds</a> <a href=\"/cats#x\">again</a>"
+            + "<a href=\"https://other.org/\">other</a> <a href=\"//cdn.example.com/a\">cdn</a>"
+            + "<a href=\"mailto:a@b.c\">mail</a> <a href=\"/bad path\">bad</a></body></html>";
+    private final List<String> ifNoneMatch = new ArrayList<>();
+    private final List<String> ifModifiedSince = new ArrayList<>();
+    private HttpServer server;
+    private HtmlParser htmlParser;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            ifNoneMatch.add(etag);
+            ifModifiedSince.add(exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+            if (ETAG.equals(etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = HTML.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        server.start();
+        JsoupConnection connection = new JsoupConnection();
+        connection.setUserAgent("test");
+        connection.setReferrer("http://localhost");
+        htmlParser = new HtmlParser(connection);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void extractsTitleTextAndLinksFromOneResponse() throws IOException {
+        PageInfo pageInfo = htmlParser.getPageInfo(url(), null);
+
+        assertEquals(200, pageInfo.getStatusCode());
+        assertEquals(ETAG, pageInfo.getEtag());
+        assertEquals(LAST_MODIFIED, pageInfo.getLastModified());
+        assertEquals("Кошки", pageInfo.getTitle());
+        assertTrue(pageInfo.getText().contains("Про кошек и собак"));
+        assertTrue(pageInfo.getContent().contains("<title>Кошки</title>"));
+        assertEquals(Set.of("/cats", "/birds"), pageInfo.getPaths());
+        assertNull(ifNoneMatch.get(0));
+        assertNull(ifModifiedSince.get(0));
+    }
+
+    @Test
+    void sendsConditionalHeadersAndSkipsBodyWhenNotModified() throws IOException {
+        PageInfo pageInfo = htmlParser.getPageInfo(url(), new PageVersion(1, ETAG, LAST_MODIFIED, "hash"));
+
+        assertTrue(pageInfo.isNotModified());
+        assertNull(pageInfo.getContent());
+        assertTrue(pageInfo.getPaths().isEmpty());
+        assertEquals(List.of(ETAG), ifNoneMatch);
+        assertEquals(List.of(LAST_MODIFIED), ifModifiedSince);
+    }
+
+    @Test
+    void contentHashIsSha256OfContent() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", htmlParser.contentHash("abc"));
+        assertNotEquals(htmlParser.contentHash(HTML), htmlParser.contentHash(HTML + " "));
+    }
+
+    private String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/page";
+    }
+}